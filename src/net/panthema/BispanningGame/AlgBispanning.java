@@ -1,7 +1,8 @@
 /*******************************************************************************
  * src/net/panthema/BispanningGame/AlgBispanning.java
  *
- * Algorithm to construct two spanning trees in a bispanning graph.
+ * Algorithm to construct two spanning trees in a bispanning graph, which can
+ * be updated incrementally after edges are inserted or deleted.
  *
  *******************************************************************************
  * Copyright (C) 2014 Timo Bingmann <tb@panthema.net>
@@ -22,11 +23,8 @@
 
 package net.panthema.BispanningGame;
 
-import java.util.ArrayDeque;
-import java.util.Map;
-import java.util.Queue;
-import java.util.Stack;
-import java.util.TreeMap;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Algorithm to construct two spanning trees in a bispanning graph.
@@ -35,106 +33,150 @@ import java.util.TreeMap;
  */
 public class AlgBispanning
 {
+    /** Switch for simple debug output */
+    private static final boolean DEBUG = false;
+
     /** Simple debug output */
-    @SuppressWarnings("unused")
     private void debug(String str) {
-        if (false)
+        if (DEBUG)
             System.out.println(str);
     }
 
-    /** The processed graph */
-    private MyGraph mGraph;
+    /** The processed graph snapshot */
+    private GraphCSR mGraph;
 
     /** Number of edges in trees */
     private int mCount0, mCount1, mCount2;
 
-    /** Three union-find data structures */
+    /** Three union-find data structures, indexed by vertex id */
     private UnionFind mUnion1, mUnion2;
 
-    /** Predecessor vertex in BFS tree of both colors */
-    private Map<Integer, MyEdge> mPred1, mPred2;
+    /** Number of vertex ids in the union-find structures */
+    private int mUnionSize;
+
+    /** Undoable scratch union-find of checkUnion(), rolled back after use */
+    private UnionFind mForest;
+
+    /** Predecessor edge in BFS tree of both colors, valid if stamped */
+    private int[] mPred1, mPred2;
+
+    /** Stamp of BFS tree of both colors, equal to mEpoch if vertex reached */
+    private int[] mPredMark1, mPredMark2;
+
+    /** Label of each edge, valid if mLabelMark equals mEpoch */
+    private int[] mLabel, mLabelMark;
+
+    /** Reusable vertex queue, edge queue and path stack buffers */
+    private int[] mQueue, mEdgeQueue, mStack;
+
+    /** Current stamp, incremented for each augmentation instead of clearing */
+    private int mEpoch;
+
+    /** Set if uncolored edges were skipped and must be retried by update() */
+    private boolean mRetryUncolored;
+
+    /** Predecessor mark of the BFS root */
+    private static final int ROOT = -2;
 
     /** Calculate BFS tree from root with given color */
-    private void bfs_tree(int color, Integer root) {
+    private void bfs_tree(int color, int root) {
 
-        Map<Integer, MyEdge> pred = (color == 1) ? mPred1 : mPred2;
-        pred.clear();
+        int[] pred = (color == 1) ? mPred1 : mPred2;
+        int[] mark = (color == 1) ? mPredMark1 : mPredMark2;
 
-        // BFS queue
-        Queue<Integer> queue = new ArrayDeque<Integer>();
+        int[] offset = mGraph.offset, adjEdge = mGraph.adjEdge, adjVertex = mGraph.adjVertex;
+        int[] ecolor = mGraph.color;
+        int epoch = mEpoch;
 
         // Initialize queue with node root
-        queue.add(root);
-        pred.put(root, new MyEdge(0));
+        int qhead = 0, qtail = 0;
+        mQueue[qtail++] = root;
+        pred[root] = ROOT;
+        mark[root] = epoch;
 
         // Breadth first search
-        while (!queue.isEmpty()) {
+        while (qhead != qtail) {
 
-            Integer v = queue.poll();
+            int v = mQueue[qhead++];
 
-            for (MyEdge ei : mGraph.getIncidentEdges(v)) {
-                if (ei.color != color)
+            for (int p = offset[v]; p < offset[v + 1]; ++p) {
+                int ei = adjEdge[p];
+                if (ecolor[ei] != color)
                     continue;
 
-                Integer w = mGraph.getOpposite(v, ei);
+                int w = adjVertex[p];
 
-                if (pred.get(w) != null) // vertex already seen
+                if (mark[w] == epoch) // vertex already seen
                     continue;
 
-                queue.add(w);
-                pred.put(w, ei);
+                mQueue[qtail++] = w;
+                pred[w] = ei;
+                mark[w] = epoch;
             }
         }
     }
 
-    private boolean bfs_augmenting_path(MyEdge e0) {
+    /** Find set of vertex index v in union-find structure */
+    private int find(UnionFind uf, int v) {
+        return uf.find(mGraph.vertexId[v]);
+    }
+
+    /** Test if edge e has a label in the current augmentation */
+    private boolean isLabeled(int e) {
+        return e >= 0 && mLabelMark[e] == mEpoch;
+    }
+
+    private boolean bfs_augmenting_path(int e0) {
 
-        // BFS queue for edges
-        Queue<MyEdge> queue = new ArrayDeque<MyEdge>();
+        int[] color = mGraph.color;
 
-        // initialize queue with node e0
-        queue.add(e0);
+        // initialize edge queue with e0
+        int qhead = 0, qtail = 0;
+        mEdgeQueue[qtail++] = e0;
 
-        Integer e0_x = mGraph.getEndpoints(e0).getFirst();
+        int e0_x = mGraph.tail[e0];
 
-        // erase labels
-        Map<MyEdge, MyEdge> label = new TreeMap<MyEdge, MyEdge>();
+        // labels are erased implicitly by the new epoch of bfs_tree().
 
-        while (!queue.isEmpty()) {
-            MyEdge e = queue.poll();
+        while (qhead != qtail) {
+            int e = mEdgeQueue[qhead++];
 
-            int ti = (e.color % 2) + 1; // other tree
+            int ti = (color[e] % 2) + 1; // other tree
 
-            Map<Integer, MyEdge> pred = (ti == 1) ? mPred1 : mPred2;
+            int[] pred = (ti == 1) ? mPred1 : mPred2;
             UnionFind myunion = (ti == 1) ? mUnion1 : mUnion2;
 
-            Integer e_v = mGraph.getEndpoints(e).getFirst();
-            Integer e_w = mGraph.getEndpoints(e).getSecond();
+            int e_v = mGraph.tail[e];
+            int e_w = mGraph.head[e];
 
-            debug("Visiting " + e + " with color " + ti + "!");
-            debug("Ends of " + e + ": " + myunion.find(e_v) + " - " + myunion.find(e_w));
+            if (DEBUG) {
+                debug("Visiting " + e + " with color " + ti + "!");
+                debug("Ends of " + e + ": " + find(myunion, e_v) + " - " + find(myunion, e_w));
+            }
 
-            if (myunion.find(e_v) != myunion.find(e_w)) {
+            if (find(myunion, e_v) != find(myunion, e_w)) {
                 debug("Augmenting sequence!");
 
-                myunion.union(e_v, e_w);
+                myunion.union(mGraph.vertexId[e_v], mGraph.vertexId[e_w]);
 
                 if (ti == 1)
                     mCount1++;
                 if (ti == 2)
                     mCount2++;
 
-                while (label.get(e) != null) {
-                    int tmp = e.color;
-                    e.color = ti;
+                while (isLabeled(e)) {
+                    int tmp = color[e];
+                    color[e] = ti;
                     ti = tmp;
 
-                    debug("colored " + e + " with " + e.color);
-                    e = label.get(e);
+                    if (DEBUG)
+                        debug("colored " + e + " with " + color[e]);
+                    e = mLabel[e];
                 }
 
-                e.color = ti;
-                debug("colored final " + e + " with " + e.color);
+                color[e] = ti;
+                if (DEBUG)
+                    debug("colored final " + e + " with " + color[e]);
 
                 mCount0--;
                 return true;
@@ -142,126 +184,410 @@ public class AlgBispanning
 
             // pick the vertex u which is not the BFS root, and walk upwards to
             // find a part of the cycle
-            Integer e_u;
-            if (e_v != e0_x && label.get(pred.get(e_v)) == null)
+            int e_u;
+            if (e_v != e0_x && !isLabeled(pred[e_v]))
                 e_u = e_v;
-            else if (e_w != e0_x && label.get(pred.get(e_w)) == null)
+            else if (e_w != e0_x && !isLabeled(pred[e_w]))
                 e_u = e_w;
             else {
                 debug("Both ends of edge already in label tree.");
                 continue;
             }
 
-            Stack<MyEdge> predpath = new Stack<MyEdge>();
+            int stack = 0;
 
-            while (e_u != e0_x && label.get(pred.get(e_u)) == null) {
-                MyEdge en = pred.get(e_u);
+            while (e_u != e0_x && !isLabeled(pred[e_u])) {
+                int en = pred[e_u];
 
-                debug("push (e_u,pred[e_u]) = (" + e_u + "," + pred.get(e_u) + ") = " + en + " onto stack.");
-                predpath.add(en);
+                if (DEBUG)
+                    debug("push (e_u,pred[e_u]) = (" + e_u + "," + pred[e_u] + ") = " + en + " onto stack.");
+                mStack[stack++] = en;
 
-                e_u = mGraph.getOpposite(e_u, pred.get(e_u));
+                e_u = mGraph.opposite(en, e_u);
             }
 
-            while (!predpath.empty()) {
-                MyEdge e_prime = predpath.pop();
-                label.put(e_prime, e);
-                queue.add(e_prime);
+            while (stack != 0) {
+                int e_prime = mStack[--stack];
+                mLabel[e_prime] = e;
+                mLabelMark[e_prime] = mEpoch;
+                mEdgeQueue[qtail++] = e_prime;
             }
         }
 
         return false;
     }
 
+    /** Start a new augmentation, which invalidates all predecessors and labels */
+    private void nextEpoch() {
+        if (++mEpoch == Integer.MAX_VALUE) {
+            Arrays.fill(mPredMark1, 0);
+            Arrays.fill(mPredMark2, 0);
+            Arrays.fill(mLabelMark, 0);
+            mEpoch = 1;
+        }
+    }
+
+    /** Verify the tree edge counters against the colors, used in assertions */
+    private boolean checkCounts() {
+        int[] count = new int[3];
+
+        for (int e = 0; e < mGraph.m; ++e)
+            count[mGraph.color[e]]++;
+
+        debug("number of colored edges: " + count[0] + " / " + count[1] + " / " + count[2]);
+
+        return (mCount0 == count[0] && mCount1 == count[1] && mCount2 == count[2]);
+    }
+
+    /** Run algorithm on the graph and store resulting colors in its edges */
     public AlgBispanning(MyGraph aGraph) {
-        mGraph = aGraph;
+        this(aGraph, false);
+    }
 
-        mCount0 = mCount1 = mCount2 = 0;
+    /**
+     * Run algorithm on the graph, optionally with a parallel greedy pass. The
+     * resulting colors of a parallel run depend on the thread interleaving.
+     */
+    public AlgBispanning(MyGraph aGraph, boolean parallel) {
+        this(aGraph.getCSR(), parallel);
+        mGraph.storeColors();
+    }
+
+    /** Run algorithm on the colors of the graph snapshot */
+    AlgBispanning(GraphCSR aGraph) {
+        this(aGraph, false);
+    }
 
-        int vertexMax = mGraph.getMaxVertexId();
+    /** Run algorithm on the colors of the graph snapshot */
+    AlgBispanning(GraphCSR aGraph, boolean parallel) {
+        bind(aGraph);
 
-        mUnion1 = new UnionFind(vertexMax + 1);
-        mUnion2 = new UnionFind(vertexMax + 1);
+        int[] color = mGraph.color;
 
-        mPred1 = new TreeMap<Integer, MyEdge>();
-        mPred2 = new TreeMap<Integer, MyEdge>();
+        mCount0 = mCount1 = mCount2 = 0;
 
-        // iterate over edge and try to keep preinitialized colors
-        for (MyEdge e0 : mGraph.getEdges()) {
-            Integer e0_x = mGraph.getEndpoints(e0).getFirst();
-            Integer e0_y = mGraph.getEndpoints(e0).getSecond();
+        mUnionSize = mGraph.vertexIndex.length;
 
-            if (e0.color == 1 && mUnion1.find(e0_x) != mUnion1.find(e0_y)) {
-                mUnion1.union(e0_x, e0_y);
-                mCount1++;
+        if (parallel) {
+            greedyParallel();
+        }
+        else {
+            mUnion1 = new UnionFind(mUnionSize);
+            mUnion2 = new UnionFind(mUnionSize);
+
+            // iterate over edge and try to keep preinitialized colors
+            for (int e0 = 0; e0 < mGraph.m; ++e0) {
+                if (!keepColor(e0)) {
+                    color[e0] = 0;
+                    mCount0++;
+                }
             }
-            else if (e0.color == 2 && mUnion2.find(e0_x) != mUnion2.find(e0_y)) {
-                mUnion2.union(e0_x, e0_y);
-                mCount2++;
+        }
+
+        // iterate over all edges and try to put them into a tree.
+        for (int e0 = 0; e0 < mGraph.m; ++e0) {
+            if (color[e0] != 0) {
+                debug("Edge already added to a tree");
             }
-            else {
-                e0.color = 0;
-                mCount0++;
+            // augment unfinished tree, or abort if no augmentation found.
+            else if (!augment(e0)) {
+                mRetryUncolored = true;
+                return;
             }
+
+            assert (checkCounts());
+
+            if (mCount1 == mGraph.n - 1 && mCount2 == mGraph.n - 1)
+                break;
         }
+    }
 
-        // iterate over all edges and try to put them into a tree.
-        for (MyEdge e0 : mGraph.getEdges()) {
-            Integer e0_x = mGraph.getEndpoints(e0).getFirst();
-            Integer e0_y = mGraph.getEndpoints(e0).getSecond();
+    /** Attach to a new snapshot of the graph and grow buffers if needed */
+    private void bind(GraphCSR aGraph) {
+        mGraph = aGraph;
 
-            if (e0.color != 0) {
-                debug("Edge already added to a tree");
+        if (mPred1 == null || mPred1.length < mGraph.n) {
+            mPred1 = new int[mGraph.n];
+            mPred2 = new int[mGraph.n];
+            mPredMark1 = new int[mGraph.n];
+            mPredMark2 = new int[mGraph.n];
+
+            mQueue = new int[mGraph.n];
+            mStack = new int[mGraph.n];
+        }
+        if (mLabel == null || mLabel.length < mGraph.m) {
+            mLabel = new int[mGraph.m];
+            mLabelMark = new int[mGraph.m];
+
+            mEdgeQueue = new int[mGraph.m + 1];
+        }
+    }
+
+    /** Add edge e0 to the tree of its preinitialized color, if possible */
+    private boolean keepColor(int e0) {
+        int e0_x = mGraph.vertexId[mGraph.tail[e0]];
+        int e0_y = mGraph.vertexId[mGraph.head[e0]];
+
+        if (mGraph.color[e0] == 1 && mUnion1.find(e0_x) != mUnion1.find(e0_y)) {
+            mUnion1.union(e0_x, e0_y);
+            mCount1++;
+            return true;
+        }
+        else if (mGraph.color[e0] == 2 && mUnion2.find(e0_x) != mUnion2.find(e0_y)) {
+            mUnion2.union(e0_x, e0_y);
+            mCount2++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Greedy pass using concurrent union-find structures: first keep the
+     * preinitialized colors of edges which do not close a cycle, then put the
+     * remaining edges directly into tree 1 or 2 if possible. Which edges of a
+     * cycle are kept depends on the thread interleaving, but the kept edges
+     * always form two forests. Only the remaining uncolored edges need the
+     * sequential labeling algorithm.
+     */
+    private void greedyParallel() {
+        final int[] color = mGraph.color;
+        final int[] vertexId = mGraph.vertexId, tail = mGraph.tail, head = mGraph.head;
+
+        final ConcurrentUnionFind uf1 = new ConcurrentUnionFind(mUnionSize);
+        final ConcurrentUnionFind uf2 = new ConcurrentUnionFind(mUnionSize);
+
+        class GreedyAction extends ConcurrentUnionFind.RangeAction
+        {
+            private static final long serialVersionUID = 2916394307510637125L;
+
+            /** Second pass puts uncolored edges into trees */
+            final boolean uncolored;
+
+            GreedyAction(int begin, int end, boolean uncolored) {
+                super(begin, end);
+                this.uncolored = uncolored;
             }
-            // check two simple cases
-            else if (mUnion1.find(e0_x) != mUnion1.find(e0_y)) {
-                debug("Edge added directly to tree 1");
 
-                e0.color = 1;
-                mUnion1.union(e0_x, e0_y);
-                mCount1++;
-                mCount0--;
+            ConcurrentUnionFind.RangeAction create(int begin, int end) {
+                return new GreedyAction(begin, end, uncolored);
             }
-            else if (mUnion2.find(e0_x) != mUnion2.find(e0_y)) {
-                debug("Edge added directly to tree 2");
 
-                e0.color = 2;
-                mUnion2.union(e0_x, e0_y);
-                mCount2++;
-                mCount0--;
+            void body(int begin, int end) {
+                for (int e0 = begin; e0 < end; ++e0) {
+                    int e0_x = vertexId[tail[e0]];
+                    int e0_y = vertexId[head[e0]];
+
+                    if (!uncolored) {
+                        if (color[e0] == 1 && uf1.union(e0_x, e0_y))
+                            continue;
+                        if (color[e0] == 2 && uf2.union(e0_x, e0_y))
+                            continue;
+                        color[e0] = 0;
+                    }
+                    else if (color[e0] == 0) {
+                        if (uf1.union(e0_x, e0_y))
+                            color[e0] = 1;
+                        else if (uf2.union(e0_x, e0_y))
+                            color[e0] = 2;
+                    }
+                }
             }
-            // apply labeling algorithm
-            else {
-                debug("BFS root node x = " + e0_x);
+        }
 
-                bfs_tree(1, e0_x);
-                bfs_tree(2, e0_x);
+        new GreedyAction(0, mGraph.m, false).run();
+        new GreedyAction(0, mGraph.m, true).run();
 
-                // augment unfinished tree, or abort if no augmentation found.
-                if (!bfs_augmenting_path(e0))
-                    return;
-            }
+        mCount1 = mUnionSize - uf1.count();
+        mCount2 = mUnionSize - uf2.count();
+        mCount0 = mGraph.m - mCount1 - mCount2;
 
-            int[] count = new int[3];
+        mUnion1 = uf1.toUnionFind();
+        mUnion2 = uf2.toUnionFind();
+    }
 
-            for (MyEdge e : mGraph.getEdges())
-                count[e.color]++;
+    /** Try to put the uncolored edge e0 into a tree, false if impossible. */
+    private boolean augment(int e0) {
+        int[] color = mGraph.color;
 
-            debug("number of colored edges: " + count[0] + " / " + count[1] + " / " + count[2]);
+        int e0_x = mGraph.vertexId[mGraph.tail[e0]];
+        int e0_y = mGraph.vertexId[mGraph.head[e0]];
 
-            assert (mCount0 == count[0]);
-            assert (mCount1 == count[1]);
-            assert (mCount2 == count[2]);
+        // check two simple cases
+        if (mUnion1.find(e0_x) != mUnion1.find(e0_y)) {
+            debug("Edge added directly to tree 1");
 
-            if (mCount1 == mGraph.getVertexCount() - 1 && mCount2 == mGraph.getVertexCount() - 1)
-                break;
+            color[e0] = 1;
+            mUnion1.union(e0_x, e0_y);
+            mCount1++;
+            mCount0--;
+            return true;
+        }
+        else if (mUnion2.find(e0_x) != mUnion2.find(e0_y)) {
+            debug("Edge added directly to tree 2");
+
+            color[e0] = 2;
+            mUnion2.union(e0_x, e0_y);
+            mCount2++;
+            mCount0--;
+            return true;
+        }
+
+        // apply labeling algorithm
+        if (DEBUG)
+            debug("BFS root node x = " + e0_x);
+
+        nextEpoch();
+        bfs_tree(1, mGraph.tail[e0]);
+        bfs_tree(2, mGraph.tail[e0]);
+
+        return bfs_augmenting_path(e0);
+    }
+
+    /** Rebuild union-find structure of one color from the tree edges */
+    private void rebuildUnion(int c) {
+        UnionFind uf = new UnionFind(mUnionSize);
+
+        for (int e0 = 0; e0 < mGraph.m; ++e0) {
+            if (mGraph.color[e0] != c)
+                continue;
+
+            int e0_x = mGraph.vertexId[mGraph.tail[e0]];
+            int e0_y = mGraph.vertexId[mGraph.head[e0]];
+
+            if (uf.find(e0_x) != uf.find(e0_y))
+                uf.union(e0_x, e0_y);
+            else
+                mGraph.color[e0] = 0; // closes a cycle, must be recolored
+        }
+
+        if (c == 1)
+            mUnion1 = uf;
+        else
+            mUnion2 = uf;
+    }
+
+    /**
+     * Check that the edges of color c form a forest and are all within the
+     * union-find's sets. Together with an equal edge count, this ensures the
+     * sets are exactly the components of the forest. A cycle, e.g. left by an
+     * unfinished exchange, would make the sets coarser than the components.
+     */
+    private boolean checkUnion(int c) {
+        UnionFind uf = (c == 1) ? mUnion1 : mUnion2;
+
+        if (mForest == null)
+            mForest = new UnionFind(mUnionSize, true);
+
+        boolean ok = true;
+        for (int e0 = 0; e0 < mGraph.m && ok; ++e0) {
+            if (mGraph.color[e0] != c)
+                continue;
+
+            int e0_x = mGraph.vertexId[mGraph.tail[e0]];
+            int e0_y = mGraph.vertexId[mGraph.head[e0]];
+
+            ok = (uf.find(e0_x) == uf.find(e0_y) && mForest.union(e0_x, e0_y));
+        }
+
+        mForest.rollback(0);
+        return ok;
+    }
+
+    /**
+     * Repair the tree packing after edges were added to or removed from the
+     * graph. The union-find structures and buffers are kept, a union-find is
+     * only rebuilt if its color lost a tree edge or was changed outside. Only
+     * the added edges are augmented, unless a union-find was rebuilt, then all
+     * uncolored edges are retried.
+     * 
+     * @param added edges added since the last update
+     * @param removed number of removed edges of each color since last update
+     */
+    void update(MyGraph aGraph, List<MyEdge> added, int[] removed) {
+        bind(aGraph.getCSR());
+
+        int[] color = mGraph.color;
+
+        // temporarily uncolor the added edges, they are put into trees below
+        int[] addedIndex = new int[added.size()];
+        int[] addedColor = new int[added.size()];
+
+        for (int i = 0; i < addedIndex.length; ++i) {
+            addedIndex[i] = mGraph.indexOf(added.get(i));
+            addedColor[i] = color[addedIndex[i]];
+            color[addedIndex[i]] = 0;
+        }
+
+        int[] count = new int[3];
+        for (int e = 0; e < mGraph.m; ++e)
+            count[color[e]]++;
+
+        // grow union-find by doubling if new vertex ids exceed it
+        boolean grow = (mUnionSize < mGraph.vertexIndex.length);
+        if (grow) {
+            mUnionSize = Math.max(mGraph.vertexIndex.length, 2 * mUnionSize);
+            mForest = null;
+        }
+
+        // rebuild union-find if tree lost edges or was changed by game moves
+        for (int c = 1; c <= 2; ++c) {
+            int treeCount = (c == 1) ? mCount1 : mCount2;
+
+            if (grow || removed[c] != 0 || count[c] != treeCount || !checkUnion(c)) {
+                debug("Rebuilding union-find of tree " + c);
+                rebuildUnion(c);
+                mRetryUncolored = true;
+            }
+        }
+
+        mCount1 = mCount2 = 0;
+        for (int e = 0; e < mGraph.m; ++e) {
+            if (color[e] == 1)
+                mCount1++;
+            else if (color[e] == 2)
+                mCount2++;
+        }
+        mCount0 = mGraph.m - mCount1 - mCount2;
+
+        // keep colors of added edges if possible
+        for (int i = 0; i < addedIndex.length; ++i) {
+            color[addedIndex[i]] = addedColor[i];
+
+            if (keepColor(addedIndex[i]))
+                mCount0--;
+            else
+                color[addedIndex[i]] = 0;
         }
+
+        if (mRetryUncolored) {
+            // any uncolored edge may fit into the trees again
+            for (int e0 = 0; e0 < mGraph.m; ++e0) {
+                if (mCount1 == mGraph.n - 1 && mCount2 == mGraph.n - 1)
+                    break;
+                if (color[e0] == 0)
+                    augment(e0);
+            }
+            mRetryUncolored = false;
+        }
+        else {
+            // only the added edges can be independent of the trees
+            for (int i = 0; i < addedIndex.length; ++i) {
+                if (mCount1 == mGraph.n - 1 && mCount2 == mGraph.n - 1)
+                    break;
+                if (color[addedIndex[i]] == 0)
+                    augment(addedIndex[i]);
+            }
+        }
+
+        assert (checkCounts());
+
+        mGraph.storeColors();
     }
 
     public boolean isOkay() {
-        if (mCount1 + mCount2 != mGraph.getEdgeCount())
+        if (mCount1 + mCount2 != mGraph.m)
             return false;
 
-        return (mCount1 == mGraph.getVertexCount() - 1 && mCount2 == mGraph.getVertexCount() - 1);
+        return (mCount1 == mGraph.n - 1 && mCount2 == mGraph.n - 1);
     }
 }
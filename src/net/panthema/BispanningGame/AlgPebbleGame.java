@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * src/net/panthema/BispanningGame/AlgPebbleGame.java
+ *
+ * The (2,2)-pebble game of Lee and Streinu, used to test whether a graph is
+ * bispanning and whether it is an atomic bispanner in polynomial time.
+ *
+ *******************************************************************************
+ * Copyright (C) 2014 Timo Bingmann <tb@panthema.net>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package net.panthema.BispanningGame;
+
+import java.util.Arrays;
+
+/**
+ * (2,2)-pebble game: each vertex starts with two pebbles, an edge is accepted
+ * if three pebbles can be gathered on its endpoints by reversing edges along
+ * directed paths, then one pebble covers the edge and orients it. A graph is
+ * bispanning iff all 2n-2 edges are accepted.
+ *
+ * A bispanning graph is composite iff a vertex set S with 2 <= |S| < n spans
+ * 2|S|-2 edges, since then {S, singletons} is a partition with 2(|P|-1)
+ * crossing edges. The smallest such set containing an edge uv is the set of
+ * vertices reachable from u and v after gathering the two remaining pebbles
+ * on them. Hence the graph is atomic iff this reach is V for all edges, which
+ * takes O(n m) time overall.
+ *
+ * @author Timo Bingmann
+ */
+class AlgPebbleGame
+{
+    /** The processed graph snapshot */
+    private GraphCSR mGraph;
+
+    /** Free pebbles on each vertex */
+    private int[] mPebbles;
+
+    /** The up to two edges covered by the pebbles of each vertex, -1 = none */
+    private int[] mOut;
+
+    /** DFS stack, predecessor out-slot and visit marks for pebble search */
+    private int[] mStack, mPred, mMark;
+
+    /** Current visit mark value */
+    private int mEpoch;
+
+    /** Flag whether all edges were accepted and m = 2n-2 */
+    private boolean mBispanning;
+
+    /** Play the pebble game on the graph */
+    AlgPebbleGame(GraphCSR aGraph) {
+        mGraph = aGraph;
+        int n = mGraph.n;
+
+        mPebbles = new int[n];
+        Arrays.fill(mPebbles, 2);
+        mOut = new int[2 * n];
+        Arrays.fill(mOut, -1);
+
+        mStack = new int[n];
+        mPred = new int[n];
+        mMark = new int[n];
+
+        mBispanning = (n == 0 && mGraph.m == 0) || (mGraph.m == 2 * n - 2);
+
+        for (int e = 0; e < mGraph.m && mBispanning; ++e)
+            mBispanning = insert(e);
+    }
+
+    /**
+     * Search a free pebble reachable from u without passing through vertex
+     * block and move it onto u by reversing the edges along the path.
+     */
+    private boolean gather(int u, int block) {
+        int seen = ++mEpoch;
+        int sp = 0;
+
+        mMark[u] = seen;
+        mMark[block] = seen;
+        mStack[sp++] = u;
+
+        while (sp != 0) {
+            int v = mStack[--sp];
+
+            for (int i = 2 * v; i < 2 * v + 2; ++i) {
+                int e = mOut[i];
+                if (e < 0) continue;
+
+                int w = mGraph.opposite(e, v);
+                if (mMark[w] == seen) continue;
+
+                mMark[w] = seen;
+                mPred[w] = i;
+
+                if (mPebbles[w] == 0) {
+                    mStack[sp++] = w;
+                    continue;
+                }
+
+                // found free pebble on w: reverse path back to u
+                mPebbles[w]--;
+
+                while (w != u) {
+                    int slot = mPred[w];
+                    int x = slot / 2;
+
+                    // edge in slot is now covered by the pebble of w
+                    int f = mOut[slot];
+                    mOut[slot] = -1;
+                    place(w, f);
+
+                    w = x;
+                }
+
+                mPebbles[u]++;
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /** Cover edge e with a pebble of v, which must have a free out slot */
+    private void place(int v, int e) {
+        if (mOut[2 * v] < 0)
+            mOut[2 * v] = e;
+        else
+            mOut[2 * v + 1] = e;
+    }
+
+    /** Gather as many pebbles on u and v as possible, at most total */
+    private int gatherOn(int u, int v, int total) {
+        while (mPebbles[u] < 2 && mPebbles[u] + mPebbles[v] < total && gather(u, v))
+            ;
+        while (mPebbles[v] < 2 && mPebbles[u] + mPebbles[v] < total && gather(v, u))
+            ;
+        return mPebbles[u] + mPebbles[v];
+    }
+
+    /** Try to insert edge e, return false if it is dependent */
+    private boolean insert(int e) {
+        int u = mGraph.tail[e], v = mGraph.head[e];
+
+        if (u == v) // a loop is never independent
+            return false;
+
+        if (gatherOn(u, v, 3) < 3)
+            return false;
+
+        int w = (mPebbles[u] > 0) ? u : v;
+        mPebbles[w]--;
+        place(w, e);
+        return true;
+    }
+
+    /** Count the vertices reachable from u and v along covered edges */
+    private int reach(int u, int v) {
+        int seen = ++mEpoch;
+        int sp = 0, count = 2;
+
+        mMark[u] = mMark[v] = seen;
+        mStack[sp++] = u;
+        mStack[sp++] = v;
+
+        while (sp != 0) {
+            int x = mStack[--sp];
+
+            for (int i = 2 * x; i < 2 * x + 2; ++i) {
+                if (mOut[i] < 0) continue;
+
+                int w = mGraph.opposite(mOut[i], x);
+                if (mMark[w] == seen) continue;
+
+                mMark[w] = seen;
+                mStack[sp++] = w;
+                ++count;
+            }
+        }
+
+        return count;
+    }
+
+    /** Return true if the graph is bispanning */
+    boolean isBispanning() {
+        return mBispanning;
+    }
+
+    /** Return true if the graph is an atomic bispanner */
+    boolean isAtomic() {
+        if (!mBispanning)
+            return false;
+
+        for (int e = 0; e < mGraph.m; ++e) {
+            int u = mGraph.tail[e], v = mGraph.head[e];
+
+            // the two remaining pebbles can always be gathered on an edge
+            gatherOn(u, v, 2);
+
+            if (reach(u, v) != mGraph.n)
+                return false;
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,414 @@
+/*******************************************************************************
+ * src/net/panthema/BispanningGame/AlgUniqueExchanges.java
+ *
+ * Algorithm to determine all edges of a bispanning graph which lead to unique
+ * edge exchanges in one sweep over both rooted spanning trees.
+ *
+ *******************************************************************************
+ * Copyright (C) 2014 Timo Bingmann <tb@panthema.net>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package net.panthema.BispanningGame;
+
+import java.util.Arrays;
+
+/**
+ * Algorithm to determine the unique exchange edges of a graph colored with two
+ * spanning trees. Edge e of tree T leads to a unique exchange if exactly one
+ * edge f on the path in the other tree T' between the ends of e also crosses
+ * the cut of T - e, i.e. if e lies on the path in T between the ends of f.
+ *
+ * Both trees are rooted once. f crosses the cut of e iff exactly one end of f
+ * lies in the subtree S of e's child end in T, and [a in S] + [b in S] - 2 [lca
+ * of a,b in T lies in S] is that indicator. Hence the number of such f on the
+ * T' path from x to y is H(x) + H(y) - 2 H(lca of x,y in T'), where H(v) sums
+ * these weights over the T' edges from v up to the root, restricted to the DFS
+ * interval of S in T. All H are calculated in one DFS walk over T' with a
+ * Fenwick tree over the DFS numbering of T, and the lowest common ancestors
+ * offline by Tarjan's algorithm. The total cost is O(n log n) for all edges.
+ *
+ * Listing the exchanges of one edge by exchanges() walks its T' path, which
+ * costs O(path length).
+ *
+ * @author Timo Bingmann
+ */
+class AlgUniqueExchanges
+{
+    /** The processed graph snapshot */
+    private GraphCSR mGraph;
+
+    /** Parent edge of each vertex in both trees, -1 for the root */
+    private int[][] mParent = new int[3][];
+
+    /** Depth of each vertex in both trees */
+    private int[][] mDepth = new int[3][];
+
+    /** DFS entry and exit number of each vertex in both trees */
+    private int[][] mTin = new int[3][], mTout = new int[3][];
+
+    /** Vertices of both trees in DFS order */
+    private int[][] mOrder = new int[3][];
+
+    /** Flag whether the colors form two spanning trees */
+    private boolean mOkay;
+
+    /** Unique exchange flag of each edge */
+    private boolean[] mUnique;
+
+    /** DFS stack and incidence list position of each vertex, reused */
+    private int[] mStack, mIter;
+
+    /** Root both trees and calculate the unique exchange flag of all edges */
+    AlgUniqueExchanges(GraphCSR aGraph) {
+        this(aGraph, true);
+    }
+
+    /**
+     * Root both trees, and calculate the unique exchange flags if calcUnique,
+     * otherwise only exchanges() may be queried.
+     */
+    AlgUniqueExchanges(GraphCSR aGraph, boolean calcUnique) {
+        mGraph = aGraph;
+        mUnique = new boolean[mGraph.m];
+
+        if (!reroot() || mGraph.n == 0 || !calcUnique)
+            return;
+
+        int[] numExchanges = new int[mGraph.m];
+        countExchanges(1, numExchanges);
+        countExchanges(2, numExchanges);
+
+        for (int e = 0; e < mGraph.m; ++e)
+            mUnique[e] = (numExchanges[e] == 1);
+    }
+
+    /**
+     * Root both trees again after the colors of the snapshot were changed,
+     * reusing all arrays. Afterwards only exchanges() may be queried, the
+     * unique exchange flags are not recalculated. Returns isOkay().
+     */
+    boolean reroot() {
+        mOkay = false;
+
+        if (mGraph.n == 0) {
+            mOkay = true;
+            return true;
+        }
+
+        // check edge counts: exactly n-1 edges of both colors
+        int count1 = 0, count2 = 0;
+        for (int e = 0; e < mGraph.m; ++e) {
+            if (mGraph.color[e] == 1)
+                count1++;
+            else if (mGraph.color[e] == 2)
+                count2++;
+            else
+                return false;
+        }
+
+        if (count1 != mGraph.n - 1 || count2 != mGraph.n - 1)
+            return false;
+
+        if (!rootTree(1) || !rootTree(2))
+            return false;
+
+        mOkay = true;
+        return true;
+    }
+
+    /**
+     * Root the tree of the given color at vertex 0 using an iterative DFS,
+     * return false if the edges of the color are not a spanning tree.
+     */
+    private boolean rootTree(int color) {
+        int n = mGraph.n;
+        int[] offset = mGraph.offset, adjEdge = mGraph.adjEdge, adjVertex = mGraph.adjVertex;
+
+        if (mParent[color] == null) {
+            mParent[color] = new int[n];
+            mDepth[color] = new int[n];
+            mTin[color] = new int[n];
+            mTout[color] = new int[n];
+            mOrder[color] = new int[n];
+        }
+        if (mStack == null) {
+            mStack = new int[n];
+            mIter = new int[n];
+        }
+
+        int[] parent = mParent[color], depth = mDepth[color];
+        int[] tin = mTin[color], tout = mTout[color], order = mOrder[color];
+        int[] stack = mStack, iter = mIter;
+
+        for (int v = 0; v < n; ++v)
+            tin[v] = -1;
+
+        int time = 0, sp = 0;
+
+        stack[sp++] = 0;
+        parent[0] = -1;
+        depth[0] = 0;
+        order[time] = 0;
+        tin[0] = time++;
+        iter[0] = offset[0];
+
+        while (sp != 0) {
+            int v = stack[sp - 1];
+
+            if (iter[v] == offset[v + 1]) {
+                tout[v] = time;
+                --sp;
+                continue;
+            }
+
+            int p = iter[v]++;
+            int ei = adjEdge[p];
+
+            if (mGraph.color[ei] != color || ei == parent[v])
+                continue;
+
+            int w = adjVertex[p];
+
+            if (tin[w] >= 0) // edge closes a cycle
+                return false;
+
+            parent[w] = ei;
+            depth[w] = depth[v] + 1;
+            order[time] = w;
+            tin[w] = time++;
+            iter[w] = offset[w];
+            stack[sp++] = w;
+        }
+
+        return (time == n);
+    }
+
+    /**
+     * Calculate the lowest common ancestors of the vertex pairs (qa[i],qb[i])
+     * in the tree of the given color by Tarjan's offline algorithm, during one
+     * walk in DFS order. The stack holds the current root path, vertices are
+     * unioned into their parent when their subtree is finished.
+     */
+    private int[] calcLCA(int color, int[] qa, int[] qb) {
+        int n = mGraph.n, q = qa.length;
+        int[] tin = mTin[color], tout = mTout[color], order = mOrder[color];
+
+        // list of queries at both of their vertices, entry j is query j/2
+        int[] first = new int[n], next = new int[2 * q];
+        Arrays.fill(first, -1);
+        for (int i = 0; i < q; ++i) {
+            next[2 * i] = first[qa[i]];
+            first[qa[i]] = 2 * i;
+            next[2 * i + 1] = first[qb[i]];
+            first[qb[i]] = 2 * i + 1;
+        }
+
+        int[] lca = new int[q];
+        int[] anc = new int[n];
+        boolean[] seen = new boolean[n];
+        UnionFind uf = new UnionFind(n);
+
+        int[] stack = new int[n];
+        int sp = 0;
+
+        for (int i = 0; i < n; ++i) {
+            int v = order[i];
+
+            // finish vertices whose subtree ends before v
+            while (sp != 0 && tout[stack[sp - 1]] <= tin[v]) {
+                int u = stack[--sp], p = stack[sp - 1];
+                uf.union(u, p);
+                anc[uf.find(p)] = p;
+            }
+
+            anc[v] = v;
+            seen[v] = true;
+
+            for (int j = first[v]; j >= 0; j = next[j]) {
+                int w = ((j & 1) == 0) ? qb[j / 2] : qa[j / 2];
+                if (seen[w])
+                    lca[j / 2] = anc[uf.find(w)];
+            }
+
+            stack[sp++] = v;
+        }
+
+        return lca;
+    }
+
+    /** Add d at position i of the Fenwick tree */
+    private static void fenwickAdd(int[] tree, int i, int d) {
+        for (++i; i < tree.length; i += i & -i)
+            tree[i] += d;
+    }
+
+    /** Return the sum of positions [0, i) of the Fenwick tree */
+    private static int fenwickSum(int[] tree, int i) {
+        int s = 0;
+        for (; i > 0; i -= i & -i)
+            s += tree[i];
+        return s;
+    }
+
+    /** Add weight d to the three points of the T' parent edge of w */
+    private void addWeights(int c, int[] tree, int f, int lf, int d) {
+        int[] tin = mTin[c];
+        fenwickAdd(tree, tin[mGraph.tail[f]], d);
+        fenwickAdd(tree, tin[mGraph.head[f]], d);
+        fenwickAdd(tree, tin[lf], -2 * d);
+    }
+
+    /**
+     * Add to count[e] of each edge e of color c (tree T) the number of edges f
+     * on the path between the ends of e in the other tree T', which cross the
+     * cut of e in T.
+     */
+    private void countExchanges(int c, int[] count) {
+        int n = mGraph.n, oc = 3 - c;
+        int[] parent = mParent[oc];
+
+        // for each T' edge f = parent[w]: lca of its ends in T
+        int[] qa = new int[n], qb = new int[n];
+        for (int w = 0; w < n; ++w) {
+            qa[w] = w;
+            qb[w] = (parent[w] < 0) ? w : mGraph.opposite(parent[w], w);
+        }
+        int[] lcaT = calcLCA(c, qa, qb);
+
+        // for each edge e: lca of its ends in T'
+        int[] lcaE = calcLCA(oc, mGraph.tail, mGraph.head);
+
+        // queries in T' at both ends of each edge e of color c and their lca
+        int[] first = new int[n];
+        Arrays.fill(first, -1);
+        int[] next = new int[3 * n], qedge = new int[3 * n], qsign = new int[3 * n];
+        int q = 0;
+        int[] at = new int[3];
+
+        for (int e = 0; e < mGraph.m; ++e) {
+            if (mGraph.color[e] != c)
+                continue;
+
+            at[0] = mGraph.tail[e];
+            at[1] = mGraph.head[e];
+            at[2] = lcaE[e];
+            for (int k = 0; k < 3; ++k) {
+                qedge[q] = e;
+                qsign[q] = (k < 2) ? 1 : -2;
+                next[q] = first[at[k]];
+                first[at[k]] = q++;
+            }
+        }
+
+        // walk T' in DFS order, keeping the weights of the root path
+        int[] tin = mTin[oc], tout = mTout[oc], order = mOrder[oc];
+        int[] tinT = mTin[c], toutT = mTout[c], parentT = mParent[c];
+        int[] tree = new int[n + 1];
+        int[] stack = new int[n];
+        int sp = 0;
+
+        for (int i = 0; i < n; ++i) {
+            int v = order[i];
+
+            while (sp != 0 && tout[stack[sp - 1]] <= tin[v]) {
+                int u = stack[--sp];
+                addWeights(c, tree, parent[u], lcaT[u], -1);
+            }
+
+            if (parent[v] >= 0)
+                addWeights(c, tree, parent[v], lcaT[v], 1);
+            stack[sp++] = v;
+
+            for (int j = first[v]; j >= 0; j = next[j]) {
+                int e = qedge[j];
+
+                // child end of e in T, its subtree is one side of the cut
+                int ce = (parentT[mGraph.tail[e]] == e) ? mGraph.tail[e] : mGraph.head[e];
+                int h = fenwickSum(tree, toutT[ce]) - fenwickSum(tree, tinT[ce]);
+                count[e] += qsign[j] * h;
+            }
+        }
+    }
+
+    /**
+     * Find the edges f on the path between the ends of e in the other tree,
+     * which also cross the cut of e in its own tree. They are stored in out
+     * from offset on, if out is not null. Stops after limit edges.
+     */
+    private int findExchanges(int e, int[] out, int offset, int limit) {
+        int c = mGraph.color[e], oc = 3 - c;
+
+        // child endpoint of e in its own tree, the cut separates its subtree
+        int ce = (mParent[c][mGraph.tail[e]] == e) ? mGraph.tail[e] : mGraph.head[e];
+        int[] tin = mTin[c], tout = mTout[c];
+        int lo = tin[ce], hi = tout[ce];
+
+        int[] parent = mParent[oc], depth = mDepth[oc];
+        int x = mGraph.tail[e], y = mGraph.head[e];
+
+        int count = 0;
+
+        // walk the path in the other tree upwards from both ends of e
+        while (x != y) {
+            if (depth[x] < depth[y]) {
+                int t = x;
+                x = y;
+                y = t;
+            }
+
+            int f = parent[x];
+
+            // f crosses the cut if exactly one end is in the subtree of ce
+            int a = tin[mGraph.tail[f]], b = tin[mGraph.head[f]];
+            if ((lo <= a && a < hi) != (lo <= b && b < hi)) {
+                if (out != null)
+                    out[offset + count] = f;
+                if (++count == limit)
+                    return count;
+            }
+
+            x = mGraph.opposite(f, x);
+        }
+
+        return count;
+    }
+
+    /** Return true if the colors form two spanning trees */
+    boolean isOkay() {
+        return mOkay;
+    }
+
+    /**
+     * Store all edges f of the other tree, for which exchanging e and f yields
+     * two spanning trees, in out (of size >= n) and return their number.
+     */
+    int exchanges(int e, int[] out) {
+        return findExchanges(e, out, 0, mGraph.n);
+    }
+
+    /**
+     * Store at most limit exchange edges of e in out from offset on, and
+     * return their number, e.g. limit 2 suffices to test for a unique one.
+     */
+    int exchanges(int e, int[] out, int offset, int limit) {
+        return findExchanges(e, out, offset, limit);
+    }
+
+    /** Return true if the edge leads to a unique exchange */
+    boolean isUnique(int e) {
+        return mUnique[e];
+    }
+}
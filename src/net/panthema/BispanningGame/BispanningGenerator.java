@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * src/net/panthema/BispanningGame/BispanningGenerator.java
+ *
+ * Generate random simple bispanning graphs directly by Henneberg-type
+ * extensions, together with a coloring into two spanning trees.
+ *
+ *******************************************************************************
+ * Copyright (C) 2014 Timo Bingmann <tb@panthema.net>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package net.panthema.BispanningGame;
+
+import java.util.SplittableRandom;
+
+/**
+ * Starting with K4, vertices are added one at a time by one of two moves,
+ * which both keep the graph simple and bispanning:
+ *
+ * 0-extension: connect new vertex v to two distinct vertices u, w. The edge
+ * vu joins the first tree, vw the second.
+ *
+ * 1-extension: remove an edge ab, connect v to a, b and a third vertex c.
+ * The edges va and vb take the color of ab and reconnect its tree, vc joins
+ * the other tree.
+ *
+ * A 1-extension also keeps an atomic graph atomic, while a 0-extension always
+ * creates the tight proper subgraph of the old vertices. Hence atomic graphs
+ * are generated using only 1-extensions. Each move takes O(1) expected time,
+ * the vertex labels are randomly permuted at the end.
+ *
+ * @author Timo Bingmann
+ */
+class BispanningGenerator
+{
+    /** Number of vertices and edges */
+    final int numVertex, numEdge;
+
+    /** Endpoints and tree color (1 or 2) of each edge */
+    final int[] tail, head, color;
+
+    /** Generate a random bispanning graph with numVertex vertices */
+    BispanningGenerator(int numVertex, boolean atomic, SplittableRandom rng) {
+        if (numVertex == 2 || numVertex == 3)
+            throw new IllegalArgumentException("No simple bispanning graph with " + numVertex + " vertices exists.");
+        if (numVertex < 0)
+            throw new IllegalArgumentException("Negative number of vertices.");
+
+        this.numVertex = numVertex;
+        numEdge = (numVertex == 0) ? 0 : 2 * numVertex - 2;
+
+        tail = new int[numEdge];
+        head = new int[numEdge];
+        color = new int[numEdge];
+
+        if (numVertex <= 1)
+            return;
+
+        // K4 as two paths 0-1-2-3 and 2-0-3-1
+        int m = 0;
+        m = put(m, 0, 1, 1);
+        m = put(m, 1, 2, 1);
+        m = put(m, 2, 3, 1);
+        m = put(m, 0, 2, 2);
+        m = put(m, 0, 3, 2);
+        m = put(m, 1, 3, 2);
+
+        for (int v = 4; v < numVertex; ++v) {
+            if (!atomic && rng.nextBoolean()) {
+                // 0-extension
+                int u = rng.nextInt(v), w;
+                do {
+                    w = rng.nextInt(v);
+                } while (w == u);
+
+                m = put(m, v, u, 1);
+                m = put(m, v, w, 2);
+            }
+            else {
+                // 1-extension on a random edge
+                int i = rng.nextInt(m);
+                int a = tail[i], b = head[i], col = color[i], c;
+                do {
+                    c = rng.nextInt(v);
+                } while (c == a || c == b);
+
+                put(i, v, a, col);
+                m = put(m, v, b, col);
+                m = put(m, v, c, 3 - col);
+            }
+        }
+
+        assert (m == numEdge);
+
+        // randomly permute vertex labels
+        int[] perm = new int[numVertex];
+        for (int i = 0; i < numVertex; ++i) {
+            int j = rng.nextInt(i + 1);
+            perm[i] = perm[j];
+            perm[j] = i;
+        }
+
+        for (int i = 0; i < numEdge; ++i) {
+            tail[i] = perm[tail[i]];
+            head[i] = perm[head[i]];
+        }
+    }
+
+    /** Store edge at position i, return i + 1 */
+    private int put(int i, int x, int y, int c) {
+        tail[i] = x;
+        head[i] = y;
+        color[i] = c;
+        return i + 1;
+    }
+
+    /** Construct a MyGraph with the generated edges and colors */
+    MyGraph toGraph() {
+        MyGraph g = new MyGraph();
+
+        for (int v = 0; v < numVertex; ++v)
+            g.addVertex(v);
+
+        for (int i = 0; i < numEdge; ++i) {
+            MyEdge e = new MyEdge(i);
+            e.color = color[i];
+            g.addEdge(e, tail[i], head[i]);
+        }
+
+        return g;
+    }
+
+    /** Generate a random bispanning graph, optionally an atomic one */
+    static MyGraph generate(int numVertex, boolean atomic, SplittableRandom rng) {
+        return new BispanningGenerator(numVertex, atomic, rng).toGraph();
+    }
+}
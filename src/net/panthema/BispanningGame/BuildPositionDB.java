@@ -0,0 +1,299 @@
+/*******************************************************************************
+ * src/net/panthema/BispanningGame/BuildPositionDB.java
+ *
+ * Offline builder of the position database: exhaustively solves all colorings
+ * reachable in the named graphs (and optionally further graphs) by retrograde
+ * analysis and writes them into a PositionDB file.
+ *
+ *******************************************************************************
+ * Copyright (C) 2014 Timo Bingmann <tb@panthema.net>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package net.panthema.BispanningGame;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Each graph is set up as a new game, i.e. its current colors are the original
+ * ones, and all positions reachable by Alice's exchanges are enumerated, free
+ * ones or with -u only unique ones. An edge exchange (e,f) from p to q is
+ * undone by (e,f) from q, hence the predecessors of q are found among its own
+ * free exchanges, of which only those are counted in which e is a legal move
+ * of Alice at p.
+ *
+ * The retrograde analysis starts at the target position, in which all edges
+ * are flipped. For each position p and Alice's edge e it counts the answers
+ * of Bob not yet proven to lead to a solved position. Positions are solved in
+ * order of their number of rounds v, and the count of e at p drops to zero
+ * exactly when all of Bob's answers are solved with at most v rounds; then p
+ * needs v+1 rounds with e. Positions never solved are those in which Bob can
+ * delay the game forever.
+ *
+ * Usage: BuildPositionDB [-o file] [-max positions] [-u] [GraphString files...]
+ *
+ * @author Timo Bingmann
+ */
+public class BuildPositionDB
+{
+    /** Default maximum number of positions of a graph */
+    static final int MAX_POSITIONS = 2000000;
+
+    /** Maximum number of positions, larger graphs are skipped */
+    private final int mMaxPositions;
+
+    /** Restrict Alice to unique exchanges */
+    private final boolean mUniqueOnly;
+
+    /** Collected database entries */
+    private long[] mKeys = new long[1024];
+    private int[] mEdgeIds = new int[1024];
+    private int[] mRounds = new int[1024];
+    private int mCount = 0;
+
+    BuildPositionDB(int maxPositions, boolean uniqueOnly) {
+        mMaxPositions = maxPositions;
+        mUniqueOnly = uniqueOnly;
+    }
+
+    /** Append an entry to the database */
+    private void add(long key, int edgeId, int rounds) {
+        if (mCount == mKeys.length) {
+            mKeys = Arrays.copyOf(mKeys, 2 * mCount);
+            mEdgeIds = Arrays.copyOf(mEdgeIds, 2 * mCount);
+            mRounds = Arrays.copyOf(mRounds, 2 * mCount);
+        }
+        mKeys[mCount] = key;
+        mEdgeIds[mCount] = edgeId;
+        mRounds[mCount] = rounds;
+        ++mCount;
+    }
+
+    /**
+     * Solve all positions of a new game on g and add them. Returns the number
+     * of positions, or -1 if the graph was skipped.
+     */
+    int addGraph(MyGraph g) {
+        g.graphChanged();
+        g.updateOriginalColor();
+
+        GraphCSR csr = new GraphCSR(g);
+        int m = csr.m;
+
+        if (m > 64 || !new AlgBispanning(g).isOkay())
+            return -1;
+
+        AlgUniqueExchanges alg = new AlgUniqueExchanges(csr, false);
+        int[] buffer = new int[csr.n];
+        int limit = mUniqueOnly ? 2 : csr.n;
+
+        long orig = 0;
+        for (int i = 0; i < m; ++i) {
+            if (csr.edge[i].origColor == 2)
+                orig |= 1L << i;
+        }
+        long target = orig ^ ((m == 64) ? -1L : (1L << m) - 1);
+
+        // position key changes of flipping each edge away from its original
+        long baseKey = g.getPositionHash();
+        long[] flipKey = new long[m];
+        for (int i = 0; i < m; ++i) {
+            MyEdge e = csr.edge[i];
+            flipKey[i] = MyGraph.zobrist(e) ^ MyGraph.zobrist(e.id, 3 - e.color, e.origColor);
+        }
+
+        // enumerate reachable positions by breadth first search
+        LongIntTable index = new LongIntTable();
+        long[] pos = new long[1024];
+        int count = 0;
+
+        pos[count++] = orig;
+        index.put(orig, 0);
+
+        for (int p = 0; p < count; ++p) {
+            load(csr, alg, pos[p]);
+
+            for (int e = 0; e < m; ++e) {
+                int cnt = alg.exchanges(e, buffer, 0, limit);
+                if (mUniqueOnly && cnt != 1)
+                    continue;
+
+                for (int i = 0; i < cnt; ++i) {
+                    long q = pos[p] ^ (1L << e) ^ (1L << buffer[i]);
+                    if (index.get(q) >= 0)
+                        continue;
+
+                    if (count == mMaxPositions)
+                        return -1;
+                    if (count == pos.length)
+                        pos = Arrays.copyOf(pos, 2 * count);
+
+                    index.put(q, count);
+                    pos[count++] = q;
+                }
+            }
+        }
+
+        // initialize answer counts of Bob for each position and edge, zero
+        // if the edge is no legal move of Alice
+        byte[] answers = new byte[count * m];
+        int[] rounds = new int[count];
+        int[] best = new int[count];
+        Arrays.fill(rounds, -1);
+
+        for (int p = 0; p < count; ++p) {
+            load(csr, alg, pos[p]);
+
+            for (int e = 0; e < m; ++e) {
+                int cnt = alg.exchanges(e, buffer, 0, limit);
+                answers[p * m + e] = (byte) ((mUniqueOnly && cnt != 1) ? 0 : cnt);
+            }
+        }
+
+        // retrograde analysis in order of the number of rounds
+        int[] queue = new int[count];
+        int qhead = 0, qtail = 0;
+
+        int t = index.get(target);
+        if (t >= 0) {
+            rounds[t] = 0;
+            best[t] = -1;
+            queue[qtail++] = t;
+        }
+
+        while (qhead < qtail) {
+            int q = queue[qhead++];
+            load(csr, alg, pos[q]);
+
+            for (int e = 0; e < m; ++e) {
+                int cnt = alg.exchanges(e, buffer);
+
+                for (int i = 0; i < cnt; ++i) {
+                    // with unique exchanges only, p may be unreachable
+                    int p = index.get(pos[q] ^ (1L << e) ^ (1L << buffer[i]));
+                    if (p < 0)
+                        continue;
+
+                    if (rounds[p] >= 0 || answers[p * m + e] == 0 || --answers[p * m + e] != 0)
+                        continue;
+
+                    rounds[p] = rounds[q] + 1;
+                    best[p] = e;
+                    queue[qtail++] = p;
+                }
+            }
+        }
+
+        for (int p = 0; p < count; ++p) {
+            long key = baseKey;
+            for (long d = pos[p] ^ orig; d != 0; d &= d - 1)
+                key ^= flipKey[Long.numberOfTrailingZeros(d)];
+
+            if (rounds[p] < 0)
+                add(key, -1, PositionDB.NEVER);
+            else
+                add(key, (best[p] < 0) ? -1 : csr.edge[best[p]].id, rounds[p]);
+        }
+
+        return count;
+    }
+
+    /** Set the colors of the snapshot to a position and root its trees */
+    private static void load(GraphCSR csr, AlgUniqueExchanges alg, long pos) {
+        GameSolver.setPosition(csr, pos);
+        if (!alg.reroot())
+            throw new IllegalStateException("Position is not two spanning trees.");
+    }
+
+    /** Write all collected positions into file */
+    void write(File file) throws IOException {
+        PositionDB.write(file, mKeys, mEdgeIds, mRounds, mCount, mUniqueOnly ? PositionDB.FLAG_UNIQUE_ONLY : 0);
+    }
+
+    /** Add graph and print a line of statistics */
+    void addGraph(String name, MyGraph g) {
+        long t0 = System.currentTimeMillis();
+        int count = addGraph(g);
+        long t1 = System.currentTimeMillis();
+
+        if (count < 0)
+            System.out.println(name + ": skipped");
+        else
+            System.out.println(name + ": edges=" + g.getEdgeCount() + " positions=" + count + " time=" + (t1 - t0)
+                    + "ms");
+    }
+
+    static void usage() {
+        System.err.println("Usage: BuildPositionDB [-o file] [-max positions] [-u] [GraphString files...]");
+        System.exit(1);
+    }
+
+    public static void main(String[] args) throws IOException {
+        File output = new File(PositionDB.DEFAULT_FILE);
+        int maxPositions = MAX_POSITIONS;
+        boolean uniqueOnly = false;
+
+        int i = 0;
+        try {
+            for (; i < args.length && args[i].startsWith("-"); i += 2) {
+                if (args[i].equals("-u")) {
+                    // flag without value
+                    uniqueOnly = true;
+                    --i;
+                    continue;
+                }
+                if (i + 1 >= args.length)
+                    usage();
+
+                if (args[i].equals("-o"))
+                    output = new File(args[i + 1]);
+                else if (args[i].equals("-max"))
+                    maxPositions = Integer.parseInt(args[i + 1]);
+                else
+                    usage();
+            }
+        }
+        catch (NumberFormatException e) {
+            usage();
+        }
+
+        BuildPositionDB db = new BuildPositionDB(maxPositions, uniqueOnly);
+
+        for (int j = 0; j < NamedGraphs.size(); ++j)
+            db.addGraph(NamedGraphs.getName(j), NamedGraphs.getGraph(j));
+
+        for (; i < args.length; ++i) {
+            BufferedReader br = new BufferedReader(new FileReader(args[i]));
+            try {
+                int num = 0;
+                for (String line = br.readLine(); line != null; line = br.readLine()) {
+                    if (line.length() == 0)
+                        continue;
+                    db.addGraph(args[i] + ":" + (++num), GraphString.read_graph(line));
+                }
+            }
+            finally {
+                br.close();
+            }
+        }
+
+        db.write(output);
+        System.out.println("Wrote " + db.mCount + " positions to " + output);
+    }
+}
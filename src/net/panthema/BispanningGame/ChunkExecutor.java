@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * src/net/panthema/BispanningGame/ChunkExecutor.java
+ *
+ * Runs the chunk tasks of the batch tools on a thread pool and consumes their
+ * results in input order.
+ *
+ *******************************************************************************
+ * Copyright (C) 2014 Timo Bingmann <tb@panthema.net>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package net.panthema.BispanningGame;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Subclasses create the tasks with next() and receive the results with
+ * consume(), both on the calling thread. At most 4 * numThreads chunks are in
+ * flight, which bounds the memory of results waiting for an earlier chunk.
+ *
+ * @author Timo Bingmann
+ */
+abstract class ChunkExecutor<T>
+{
+    /** Return the task of the next chunk, or null after the last one */
+    abstract Callable<T> next() throws IOException;
+
+    /** Consume the result of a chunk, called in the order of next() */
+    abstract void consume(T result) throws IOException;
+
+    /** Run all chunks using numThreads threads */
+    void run(int numThreads) throws IOException, InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+
+        ArrayDeque<Future<T>> queue = new ArrayDeque<Future<T>>();
+        int window = 4 * numThreads;
+        boolean eof = false;
+
+        try {
+            while (true) {
+                while (!eof && queue.size() < window) {
+                    Callable<T> task = next();
+                    if (task == null)
+                        eof = true;
+                    else
+                        queue.add(pool.submit(task));
+                }
+
+                if (queue.isEmpty())
+                    break;
+
+                try {
+                    consume(queue.poll().get());
+                }
+                catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException)
+                        throw (IOException) e.getCause();
+                    throw new RuntimeException(e.getCause());
+                }
+            }
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * src/net/panthema/BispanningGame/ChunkSource.java
+ *
+ * Source of line aligned chunks of a file or stream, such as graph6 or sparse6
+ * catalogues, which can be decoded independently in parallel.
+ *
+ *******************************************************************************
+ * Copyright (C) 2014 Timo Bingmann <tb@panthema.net>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package net.panthema.BispanningGame;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * A file is memory mapped in regions of about CHUNK bytes, which end after
+ * their last newline, a region without newline is doubled. A stream is read
+ * into buffers of about CHUNK bytes, the part after the last newline is
+ * carried over into the next buffer. Hence each chunk holds complete lines, e.g. for a Graph6Reader.
+ *
+ * @author Timo Bingmann
+ */
+abstract class ChunkSource
+{
+    /** Approximate size of the chunks */
+    static final int CHUNK = 1 << 20;
+
+    /** Return the next chunk, or null at the end of the input */
+    abstract ByteBuffer next() throws IOException;
+
+    /** Return the number of bytes read */
+    abstract long getPosition();
+
+    /** Return the length of data up to and including the last newline */
+    static int cut(ByteBuffer data, int len) {
+        int i = len;
+        while (i > 0 && data.get(i - 1) != '\n')
+            --i;
+        return i;
+    }
+
+    /** Read chunks as regions of a memory mapped file */
+    static ChunkSource open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        final FileChannel ch = raf.getChannel();
+        final long size = ch.size();
+
+        return new ChunkSource() {
+            long mPos = 0;
+
+            ByteBuffer next() throws IOException {
+                if (mPos == size) {
+                    ch.close();
+                    return null;
+                }
+
+                // grow the region until it contains a newline
+                for (long len = CHUNK;; len *= 2) {
+                    len = Math.min(len, size - mPos);
+                    MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, mPos, len);
+
+                    int n = (mPos + len == size) ? (int) len : cut(map, (int) len);
+                    if (n != 0) {
+                        mPos += n;
+                        map.limit(n);
+                        return map;
+                    }
+                }
+            }
+
+            long getPosition() {
+                return mPos;
+            }
+        };
+    }
+
+    /** Read chunks from a stream */
+    static ChunkSource open(final InputStream in) {
+        return new ChunkSource() {
+            byte[] mCarry = new byte[0];
+            long mPos = 0;
+            boolean mEOF = false;
+
+            ByteBuffer next() throws IOException {
+                if (mEOF && mCarry.length == 0)
+                    return null;
+
+                byte[] data = Arrays.copyOf(mCarry, Math.max(CHUNK, 2 * mCarry.length));
+                int len = mCarry.length;
+
+                while (len < data.length && !mEOF) {
+                    int r = in.read(data, len, data.length - len);
+                    if (r < 0)
+                        mEOF = true;
+                    else
+                        len += r;
+                }
+
+                int n = mEOF ? len : cut(ByteBuffer.wrap(data), len);
+                mCarry = Arrays.copyOfRange(data, n, len);
+                mPos += n;
+
+                return ByteBuffer.wrap(data, 0, n);
+            }
+
+            long getPosition() {
+                return mPos;
+            }
+        };
+    }
+}
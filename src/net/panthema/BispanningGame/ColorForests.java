@@ -0,0 +1,274 @@
+/*******************************************************************************
+ * src/net/panthema/BispanningGame/ColorForests.java
+ *
+ * Dynamic spanning forests of both edge colors, kept in sync with flips of
+ * edge colors, answering cycle, path and cut side queries without BFS.
+ *
+ *******************************************************************************
+ * Copyright (C) 2014 Timo Bingmann <tb@panthema.net>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package net.panthema.BispanningGame;
+
+import java.util.Arrays;
+
+/**
+ * For each color, a spanning forest of the edges with that color is kept in a
+ * LinkCutForest, in which vertex v is node v and edge e is node n+e, such that
+ * tree paths also yield the edges. Edges of a color closing a cycle are kept
+ * in a non-tree list. When a tree edge leaves its color, the non-tree edges
+ * are checked for a replacement, which is cheap during play since each color
+ * has at most one non-tree edge.
+ *
+ * The cycle of a color is unique if the color has at most one non-tree edge.
+ * Only then calcCycle() equals the BFS in GraphCSR, otherwise callers must
+ * fall back to it. The cut and cycle tests hold for any coloring without
+ * black edges.
+ *
+ * @author Timo Bingmann
+ */
+class ColorForests
+{
+    /** Graph structure snapshot of the forests */
+    final GraphCSR graph;
+
+    /** Color of each edge as maintained in the forests */
+    private int[] mColor;
+
+    /** Spanning forest of each color, index 1 and 2 */
+    private LinkCutForest[] mForest = new LinkCutForest[3];
+
+    /** Flag whether an edge is in the spanning forest of its color */
+    private boolean[] mInTree;
+
+    /** Non-tree edges of each color and position of each edge in the list */
+    private int[][] mNonTree = new int[3][];
+    private int[] mNonTreeSize = new int[3];
+    private int[] mNonTreePos;
+
+    /** Number of black edges, the forests are not used if there are any */
+    private int mBlack;
+
+    /** Scratch buffer for path nodes */
+    private int[] mPath;
+
+    /** Build the forests from the current colors of the snapshot */
+    ColorForests(GraphCSR aGraph) {
+        graph = aGraph;
+        int n = graph.n, m = graph.m;
+
+        mColor = Arrays.copyOf(graph.color, m);
+        mInTree = new boolean[m];
+        mNonTreePos = new int[m];
+        mPath = new int[n + m];
+
+        for (int c = 1; c <= 2; ++c) {
+            mForest[c] = new LinkCutForest(n + m);
+            mNonTree[c] = new int[m];
+        }
+
+        for (int e = 0; e < m; ++e) {
+            if (mColor[e] == 0)
+                ++mBlack;
+            else
+                insert(e);
+        }
+    }
+
+    /** Insert edge into the forest of its color */
+    private void insert(int e) {
+        int c = mColor[e], x = graph.tail[e], y = graph.head[e];
+
+        if (!mForest[c].connected(x, y)) {
+            mForest[c].link(x, graph.n + e);
+            mForest[c].link(graph.n + e, y);
+            mInTree[e] = true;
+        }
+        else {
+            mNonTreePos[e] = mNonTreeSize[c];
+            mNonTree[c][mNonTreeSize[c]++] = e;
+        }
+    }
+
+    /** Remove non-tree edge from the list of its color */
+    private void removeNonTree(int e) {
+        int c = mColor[e];
+        int last = mNonTree[c][--mNonTreeSize[c]];
+        mNonTree[c][mNonTreePos[e]] = last;
+        mNonTreePos[last] = mNonTreePos[e];
+    }
+
+    /** Remove edge from the forest of its color, relink a replacement */
+    private void remove(int e) {
+        int c = mColor[e];
+
+        if (!mInTree[e]) {
+            removeNonTree(e);
+            return;
+        }
+
+        mForest[c].cut(graph.tail[e], graph.n + e);
+        mForest[c].cut(graph.n + e, graph.head[e]);
+        mInTree[e] = false;
+
+        // find a non-tree edge reconnecting the two trees
+        for (int i = 0; i < mNonTreeSize[c]; ++i) {
+            int f = mNonTree[c][i];
+
+            if (!mForest[c].connected(graph.tail[f], graph.head[f])) {
+                removeNonTree(f);
+                mForest[c].link(graph.tail[f], graph.n + f);
+                mForest[c].link(graph.n + f, graph.head[f]);
+                mInTree[f] = true;
+                break;
+            }
+        }
+    }
+
+    /** Return true if the forests can answer queries: no black edges */
+    boolean isUsable() {
+        return (mBlack == 0);
+    }
+
+    /** Return the color of edge e in the forests */
+    int getColor(int e) {
+        return mColor[e];
+    }
+
+    /** Copy the colors of all edges in the forests into color */
+    void copyColors(int[] color) {
+        System.arraycopy(mColor, 0, color, 0, mColor.length);
+    }
+
+    /** Move edge e into the forest of the other color */
+    void flip(int e) {
+        if (mColor[e] == 0) return;
+
+        remove(e);
+        mColor[e] = 3 - mColor[e];
+        insert(e);
+    }
+
+    /** Return true if a cycle through e0 in its color is unique */
+    boolean isCycleUnique(int e0) {
+        return (mNonTreeSize[mColor[e0]] <= 1);
+    }
+
+    /** Return edges of the tree path from u to v in the forest of color c */
+    private int[] treePath(int c, int u, int v) {
+        int len = mForest[c].path(u, v, mPath);
+        if (len < 0)
+            return null;
+
+        // nodes alternate between vertices and edges
+        int[] path = new int[len / 2];
+        for (int i = 1; i < len; i += 2)
+            path[i / 2] = mPath[i] - graph.n;
+
+        return path;
+    }
+
+    /** Concatenate edge paths */
+    private static int[] concat(int[] a, int[] b, int[] c) {
+        int[] r = new int[a.length + b.length + c.length];
+        System.arraycopy(a, 0, r, 0, a.length);
+        System.arraycopy(b, 0, r, a.length, b.length);
+        System.arraycopy(c, 0, r, a.length + b.length, c.length);
+        return r;
+    }
+
+    /**
+     * Calculate the cycle of the color of e0 through e0, requires
+     * isCycleUnique(e0). Returns the edges from the head to the tail of e0
+     * followed by e0 like GraphCSR.calcCycle(e0, true), or null.
+     */
+    int[] calcCycle(int e0) {
+        int c = mColor[e0], x = graph.tail[e0], y = graph.head[e0];
+
+        if (!mInTree[e0]) // e0 closes a cycle in the forest
+            return concat(treePath(c, y, x), new int[0], new int[] { e0 });
+
+        if (mNonTreeSize[c] == 0)
+            return null;
+
+        // e0 must lie on the tree path of the only non-tree edge f
+        int f = mNonTree[c][0], s = graph.tail[f], t = graph.head[f];
+
+        if (!mForest[c].onPath(s, t, graph.n + e0))
+            return null;
+
+        // let s be on the side of y after removing e0
+        if (mForest[c].onPath(y, s, graph.n + e0)) {
+            s = t;
+            t = graph.tail[f];
+        }
+
+        return concat(treePath(c, y, s), new int[] { f },
+                      concat(treePath(c, t, x), new int[0], new int[] { e0 }));
+    }
+
+    /**
+     * Return true if e0 induces a cut in the graph without its color, i.e. the
+     * ends of e0 are not connected in the other color.
+     */
+    boolean hasCut(int e0) {
+        return !mForest[3 - mColor[e0]].connected(graph.tail[e0], graph.head[e0]);
+    }
+
+    /**
+     * Return the side of the cut of e0 vertex v lies on: 0 if v is connected to
+     * the tail of e0 in the other color, 1 if to the head, otherwise -1.
+     */
+    int cutSide(int e0, int v) {
+        LinkCutForest f = mForest[3 - mColor[e0]];
+
+        if (f.connected(graph.tail[e0], v))
+            return 0;
+        if (f.connected(graph.head[e0], v))
+            return 1;
+        return -1;
+    }
+
+    /**
+     * Test if edge e crosses the cut of e0, which requires hasCut(e0). The cut
+     * consists of the edges of the color of e0 between both sides, like
+     * GraphCSR.calcCut(e0, true).
+     */
+    boolean inCut(int e0, int e) {
+        if (mColor[e] != mColor[e0])
+            return false;
+
+        int s = cutSide(e0, graph.tail[e]);
+        return s >= 0 && cutSide(e0, graph.head[e]) == 1 - s;
+    }
+
+    /** Test if e0 is contained in a cycle of the same color in the graph */
+    boolean testCycle(int e0) {
+        int c = mColor[e0];
+
+        if (!mInTree[e0])
+            return true;
+
+        // some non-tree edge must have e0 on its tree path
+        for (int i = 0; i < mNonTreeSize[c]; ++i) {
+            int f = mNonTree[c][i];
+            if (mForest[c].onPath(graph.tail[f], graph.head[f], graph.n + e0))
+                return true;
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * src/net/panthema/BispanningGame/ConcurrentUnionFind.java
+ *
+ * Lock-free Union-Find data structure which may be used by many threads
+ * concurrently, for parallel connectivity and spanning forest phases.
+ *
+ *******************************************************************************
+ * Copyright (C) 2014 Timo Bingmann <tb@panthema.net>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package net.panthema.BispanningGame;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Concurrent disjoint sets following Jayanti and Tarjan: each element has a
+ * fixed pseudo-random priority, and a union links the root of lower priority
+ * below the other one by a single compare-and-set of its parent pointer. If
+ * the CAS fails, another thread changed the root and the union is retried.
+ * Finds shorten paths by path splitting, also using CAS, which may fail
+ * harmlessly.
+ *
+ * The successful unions are linearizable, hence the edges for which union()
+ * returned true form a spanning forest, no matter how threads interleave.
+ * The operations are lock-free but not wait-free: a thread may retry a union
+ * as long as other threads keep succeeding on the same roots.
+ *
+ * @author Timo Bingmann
+ */
+class ConcurrentUnionFind
+{
+    /** Parent of each element, the element itself if it is a root */
+    private final AtomicIntegerArray mParent;
+
+    /** Number of disjoint sets */
+    private final AtomicInteger mCount;
+
+    /** Construct numElements singleton sets */
+    ConcurrentUnionFind(int numElements) {
+        mParent = new AtomicIntegerArray(numElements);
+        mCount = new AtomicInteger(numElements);
+
+        for (int i = 0; i < numElements; ++i)
+            mParent.set(i, i);
+    }
+
+    /** Bijective scrambling of the index used as linking priority */
+    private static int priority(int x) {
+        x *= 0x9E3779B1;
+        return x ^ (x >>> 16);
+    }
+
+    /** Find the current root of the set containing x */
+    int find(int x) {
+        while (true) {
+            int p = mParent.get(x);
+            if (p == x)
+                return x;
+
+            int gp = mParent.get(p);
+            if (p == gp)
+                return p;
+
+            // path splitting: point x to its grandparent
+            mParent.compareAndSet(x, p, gp);
+            x = p;
+        }
+    }
+
+    /** Unite the sets containing a and b, return false if already united */
+    boolean union(int a, int b) {
+        while (true) {
+            a = find(a);
+            b = find(b);
+
+            if (a == b)
+                return false;
+
+            // link root of lower priority below the other
+            if (priority(a) > priority(b)) {
+                int t = a;
+                a = b;
+                b = t;
+            }
+
+            if (mParent.compareAndSet(a, a, b)) {
+                mCount.decrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /** Return true if a and b are in the same set, only valid if quiescent */
+    boolean same(int a, int b) {
+        return find(a) == find(b);
+    }
+
+    /** Return the number of disjoint sets */
+    int count() {
+        return mCount.get();
+    }
+
+    /**
+     * Convert into a sequential UnionFind containing the same sets, must be
+     * called after all concurrent unions are finished.
+     */
+    UnionFind toUnionFind() {
+        int[] root = new int[mParent.length()];
+
+        for (int i = 0; i < root.length; ++i)
+            root[i] = find(i);
+
+        return new UnionFind(root);
+    }
+
+    /**
+     * Action running body() on the index range [begin,end) recursively split
+     * into pieces of at most GRAIN indexes.
+     */
+    static abstract class RangeAction extends RecursiveAction
+    {
+        private static final long serialVersionUID = 6140125312316874061L;
+
+        /** Number of indexes processed sequentially */
+        static final int GRAIN = 4096;
+
+        final int begin, end;
+
+        RangeAction(int begin, int end) {
+            this.begin = begin;
+            this.end = end;
+        }
+
+        /** Create an action for a subrange */
+        abstract RangeAction create(int begin, int end);
+
+        /** Process the indexes [begin,end) */
+        abstract void body(int begin, int end);
+
+        protected void compute() {
+            if (end - begin <= GRAIN) {
+                body(begin, end);
+                return;
+            }
+
+            int mid = (begin + end) >>> 1;
+            invokeAll(create(begin, mid), create(mid, end));
+        }
+
+        /** Run this action on the common fork/join pool */
+        void run() {
+            ForkJoinPool.commonPool().invoke(this);
+        }
+    }
+}
@@ -28,12 +28,31 @@
 
 package net.panthema.BispanningGame;
 
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 interface SetPartitionFunctor
 {
     // called with const array of partition numbers for each item of the n-set
     boolean partition(final int[] s);
 }
 
+interface SetPartitionMoveFunctor extends SetPartitionFunctor
+{
+    // called before each partition() for every element which changed its
+    // block since the previous partition. Between the moves of one step the
+    // blocks are transient and need not form a valid partition.
+    void move(int element, int from, int to);
+}
+
+interface SetPartitionFunctorFactory
+{
+    // called once for each parallel enumerator to create its own functor
+    SetPartitionFunctor create(EnumerateSetPartitions en);
+}
+
 class EnumerateSetPartitions
 {
     // the size of the base set
@@ -44,14 +63,61 @@ class EnumerateSetPartitions
     // m[i] is the largest of the first i elements in s
     protected int[] m;
 
+    // elements fixed..n-1 keep their blocks during the enumeration
+    protected int fixed;
+
+    // set by another worker to end the enumeration early
+    protected AtomicBoolean stop;
+
     EnumerateSetPartitions(int _n) {
         n = _n;
 
         s = new int[n];
         m = new int[n];
+
+        // the last element is always in block 0
+        fixed = n - 1;
+    }
+
+    // enumerate only the partitions in which the top prefix.length elements
+    // are in the blocks given by the restricted growth string prefix, where
+    // prefix[j] is the block of element n - prefix.length + j.
+    EnumerateSetPartitions(int _n, int[] prefix) {
+        this(_n);
+
+        fixed = n - prefix.length;
+        System.arraycopy(prefix, 0, s, fixed, prefix.length);
+
+        // calculate maxima of the fixed elements, all others are in block 0
+        for (int i = n - 1; i >= fixed; --i)
+            m[i] = (i == n - 1) ? s[i] : Math.max(s[i], m[i + 1]);
+        for (int i = 0; i < fixed; ++i)
+            m[i] = m[fixed];
+    }
+
+    // number of blocks of the current partition
+    int numBlocks() {
+        return n == 0 ? 0 : m[0] + 1;
     }
 
     boolean enumerate(SetPartitionFunctor functor) {
+        // report element moves if the functor can use them
+        SetPartitionMoveFunctor mover = null;
+        if (functor instanceof SetPartitionMoveFunctor)
+            mover = (SetPartitionMoveFunctor) functor;
+
+        // the empty set has only the empty partition
+        if (n == 0)
+            return functor.partition(s);
+
+        // report the elements of a prefix as moved out of block 0
+        if (mover != null) {
+            for (int i = fixed; i < n; ++i) {
+                if (s[i] != 0)
+                    mover.move(i, 0, s[i]);
+            }
+        }
+
         // 0 0 0 0 is the first way to partition a set is to put all the
         // elements in the same subset.
 
@@ -66,17 +132,28 @@ class EnumerateSetPartitions
 
             int i = 0;
             ++s[i];
-            while ((i < n - 1) && (s[i] > m[i + 1] + 1)) {
+            while ((i < fixed) && (s[i] > m[i + 1] + 1)) {
+                // element i returns to block 0 from its last block s[i]-1
+                if (mover != null && s[i] != 1)
+                    mover.move(i, s[i] - 1, 0);
+
                 s[i] = 0;
                 ++i;
                 ++s[i];
             }
 
-            // If i is has reached n-1 th element, then the last unique
-            // partitiong has been found
-            if (i == n - 1)
+            // If i is has reached the first fixed element, then the last
+            // unique partitiong has been found
+            if (i == fixed)
                 break;
 
+            // another worker found a result
+            if (stop != null && stop.get())
+                return true;
+
+            if (mover != null)
+                mover.move(i, s[i] - 1, s[i]);
+
             // Because all the first i elements are now 1, s[i] (i + 1 th
             // element) is the largest. So we update max by copying it to all
             // the first i positions in m.
@@ -92,4 +169,79 @@ class EnumerateSetPartitions
         }
         return true;
     }
+
+    // enumerate all set partitions of {0,...,n-1} in parallel. The blocks of
+    // the top d elements are fixed to each prefix of d elements, and the
+    // prefixes are enumerated as separate tasks on the common pool with their
+    // own functors. Returns false if any functor returned false, all other
+    // tasks stop early in that case.
+    static boolean enumerateParallel(int n, SetPartitionFunctorFactory factory) {
+        if (n == 0)
+            return new EnumerateSetPartitions(0).enumerate(factory.create(null));
+
+        ForkJoinPool p = ForkJoinPool.commonPool();
+
+        // choose a prefix length yielding enough tasks to balance the load
+        final ArrayList<int[]> prefixes = new ArrayList<int[]>();
+
+        for (int d = 1; d <= n; ++d) {
+            prefixes.clear();
+
+            new EnumerateSetPartitions(d).enumerate(new SetPartitionFunctor() {
+                public boolean partition(final int[] s) {
+                    prefixes.add(s.clone());
+                    return true;
+                }
+            });
+
+            if (prefixes.size() >= 16 * p.getParallelism())
+                break;
+        }
+
+        AtomicBoolean stop = new AtomicBoolean(false);
+        p.invoke(new PrefixTask(n, prefixes, 0, prefixes.size(), factory, stop));
+
+        return !stop.get();
+    }
+
+    // task enumerating the partitions of a range of prefixes
+    private static class PrefixTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 4735260127583917592L;
+
+        final int n;
+        final ArrayList<int[]> prefixes;
+        final int begin, end;
+        final SetPartitionFunctorFactory factory;
+        final AtomicBoolean stop;
+
+        PrefixTask(int n, ArrayList<int[]> prefixes, int begin, int end,
+                   SetPartitionFunctorFactory factory, AtomicBoolean stop) {
+            this.n = n;
+            this.prefixes = prefixes;
+            this.begin = begin;
+            this.end = end;
+            this.factory = factory;
+            this.stop = stop;
+        }
+
+        protected void compute() {
+            // split range in halves until single prefixes remain
+            if (end - begin > 1) {
+                int mid = (begin + end) / 2;
+                invokeAll(new PrefixTask(n, prefixes, begin, mid, factory, stop),
+                          new PrefixTask(n, prefixes, mid, end, factory, stop));
+                return;
+            }
+
+            if (stop.get())
+                return;
+
+            EnumerateSetPartitions en = new EnumerateSetPartitions(n, prefixes.get(begin));
+            en.stop = stop;
+
+            if (!en.enumerate(factory.create(en)))
+                stop.set(true);
+        }
+    }
 }
@@ -0,0 +1,280 @@
+/*******************************************************************************
+ * src/net/panthema/BispanningGame/ExchangeAnalysis.java
+ *
+ * Cycle, cut and unique exchange analysis of an immutable snapshot of the
+ * coloring, which may be calculated on a background thread and published to
+ * the graph's edges afterwards.
+ *
+ *******************************************************************************
+ * Copyright (C) 2014 Timo Bingmann <tb@panthema.net>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package net.panthema.BispanningGame;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The snapshot is taken on the event dispatch thread, the calc methods only
+ * read and write the snapshot's own data and may run on any one thread, and
+ * publish() copies the results into the MyEdge flags at once. If the graph was
+ * changed in the meantime, isCurrent() returns false and the results must be
+ * discarded.
+ *
+ * The snapshot takes over the graph's dynamic forests, if they are usable, and
+ * gives them back in publish(), hence a cycle and its fixes are found in O(L
+ * log n) amortized time for a cycle of length L. Only if the forests cannot
+ * answer a query, a breadth first search runs on a colored GraphCSR copy. The
+ * whole cut is only needed to display it, it is calculated by one breadth
+ * first search in O(n+m) if requested by setMarkCut().
+ *
+ * A whole round still takes Omega(n) time: Bob's move recalculates the unique
+ * exchanges of all edges in calcUniqueExchanges(), in O(n log n).
+ *
+ * @author Timo Bingmann
+ */
+class ExchangeAnalysis
+{
+    /** The graph the snapshot was taken of */
+    final MyGraph graph;
+
+    /** Position hash of the graph when the snapshot was taken */
+    private final long mHash;
+
+    /** Dynamic forests taken from the graph, or null */
+    private ColorForests mForests;
+
+    /** Position hash of the snapshot's colors, changed by calcFix() */
+    private long mColorHash;
+
+    /** Private colored copy of the graph's compact representation, or null */
+    private GraphCSR mCSR;
+
+    /** Flag whether calcCycleFixes() also marks the whole cut */
+    private boolean mMarkCut;
+
+    /** Edge indexes of the marked cycle, cut and fixes, or null */
+    private int[] mCycle, mCut, mFixes;
+
+    /** Unique exchange flag of each edge index, or null */
+    private boolean[] mIsUE;
+
+    /** Whether the marked edge closes a cycle */
+    private boolean mHaveCycle;
+
+    /** Take a snapshot of the current colors of g */
+    ExchangeAnalysis(MyGraph g) {
+        graph = g;
+        mHash = mColorHash = g.getPositionHash();
+        mForests = g.takeForests();
+
+        if (mForests == null)
+            mCSR = new GraphCSR(g.getCSR());
+    }
+
+    /** Return the graph structure of the snapshot */
+    private GraphCSR structure() {
+        return (mForests != null) ? mForests.graph : mCSR;
+    }
+
+    /** Return the colored snapshot, copied from the forests when first needed */
+    private GraphCSR csr() {
+        if (mCSR == null) {
+            mCSR = new GraphCSR(mForests.graph);
+            mForests.copyColors(mCSR.color);
+        }
+        return mCSR;
+    }
+
+    /** Return the index of e in the snapshot */
+    int indexOf(MyEdge e) {
+        return structure().indexOf(e);
+    }
+
+    /** Return the edge of index i */
+    MyEdge getEdge(int i) {
+        return structure().edge[i];
+    }
+
+    /** Test if the graph still has the colors of the snapshot */
+    boolean isCurrent(MyGraph g) {
+        return g == graph && g.getPositionHash() == mHash;
+    }
+
+    /** Set whether calcCycleFixes() also marks the whole cut, for display */
+    void setMarkCut(boolean markCut) {
+        mMarkCut = markCut;
+    }
+
+    /**
+     * Test if e0 closes a cycle of the same color, if it does, mark the cycle
+     * and those of its edges in the cut of e0, which fix the cycle.
+     */
+    boolean calcCycleFixes(int e0) {
+        mCycle = mCut = mFixes = null;
+
+        // breadth first search if the cycle is not unique
+        boolean useForests = (mForests != null && mForests.isCycleUnique(e0));
+        boolean[] inCut = null;
+
+        mCycle = useForests ? mForests.calcCycle(e0) : csr().calcCycle(e0, true);
+        if (mCycle == null)
+            return mHaveCycle = false;
+
+        if (useForests) {
+            if (!mForests.hasCut(e0))
+                return mHaveCycle = false;
+
+            // the whole cut is only displayed, one BFS instead of m queries
+            if (mMarkCut)
+                mCut = csr().calcCut(e0, true);
+        }
+        else {
+            int[] cut = mCSR.calcCut(e0, true);
+            if (cut == null)
+                return mHaveCycle = false;
+
+            inCut = new boolean[mCSR.m];
+            for (int i : cut)
+                inCut[i] = true;
+
+            if (mMarkCut)
+                mCut = cut;
+        }
+
+        // fixes are the cycle edges in the cut
+        int[] fixes = new int[mCycle.length];
+        int size = 0;
+        for (int i : mCycle) {
+            if (useForests ? mForests.inCut(e0, i) : inCut[i])
+                fixes[size++] = i;
+        }
+        mFixes = Arrays.copyOf(fixes, size);
+
+        return mHaveCycle = true;
+    }
+
+    /** Return whether e0 closed a cycle in calcCycleFixes() */
+    boolean haveCycle() {
+        return mHaveCycle;
+    }
+
+    /** Flip the color of edge i in the snapshot */
+    private void flip(int i) {
+        MyEdge e = getEdge(i);
+        int c = (mForests != null) ? mForests.getColor(i) : mCSR.color[i];
+        mColorHash ^= MyGraph.zobrist(e.id, c, e.origColor) ^ MyGraph.zobrist(e.id, 3 - c, e.origColor);
+
+        if (mForests != null)
+            mForests.flip(i);
+        if (mCSR != null)
+            mCSR.color[i] = 3 - c;
+    }
+
+    /** Test if edge i is contained in a cycle of its color in the snapshot */
+    private boolean testCycle(int i) {
+        return (mForests != null) ? mForests.testCycle(i) : mCSR.testCycle(i);
+    }
+
+    /**
+     * Return the first of the candidate edges whose flip leaves no cycle of
+     * its new color, and flip it in the snapshot, or return null.
+     */
+    MyEdge calcFix(List<MyEdge> candidates) {
+        for (MyEdge e : candidates) {
+            int i = indexOf(e);
+            flip(i);
+
+            if (!testCycle(i)) {
+                mHaveCycle = false;
+                return e;
+            }
+
+            flip(i);
+        }
+        return null;
+    }
+
+    /**
+     * Calculate edges of the snapshot which lead to unique exchanges, and
+     * clear the cycle and cut marks.
+     */
+    void calcUniqueExchanges() {
+        GraphCSR g = csr();
+
+        mCycle = mCut = mFixes = null;
+        mIsUE = new boolean[g.m];
+
+        AlgUniqueExchanges alg = new AlgUniqueExchanges(g);
+
+        for (int i = 0; i < g.m; ++i) {
+            // fall back to single tests if colors are not two spanning trees
+            mIsUE[i] = alg.isOkay() ? alg.isUnique(i) : testUniqueExchange(i);
+        }
+    }
+
+    /** Test if the edge e0 leads to a unique exchange */
+    private boolean testUniqueExchange(int e0) {
+        if (mCSR.testCycle(e0))
+            return false;
+
+        int[] cycle = mCSR.calcCycle(e0, false);
+        int[] cut = mCSR.calcCut(e0, false);
+        if (cycle == null || cut == null)
+            return false;
+
+        boolean[] inCut = new boolean[mCSR.m];
+        for (int i : cut)
+            inCut[i] = true;
+
+        int count = 0;
+        for (int i : cycle) {
+            if (inCut[i])
+                ++count;
+        }
+        return count == 1;
+    }
+
+    /**
+     * Copy the results into the flags of the edges, on the UI thread, and give
+     * the forests back to the graph. Only the previously marked edges are
+     * cleared, hence this takes O(m) time only with unique exchanges.
+     */
+    void publish() {
+        graph.clearMarks();
+
+        if (mCycle != null) {
+            for (int i : mCycle)
+                graph.markEdge(getEdge(i)).inCycle = true;
+        }
+        if (mCut != null) {
+            for (int i : mCut)
+                graph.markEdge(getEdge(i)).inCut = true;
+        }
+        if (mFixes != null) {
+            for (int i : mFixes)
+                graph.markEdge(getEdge(i)).isFix = true;
+        }
+        if (mIsUE != null) {
+            for (int i = 0; i < mIsUE.length; ++i)
+                getEdge(i).isUE = mIsUE[i];
+        }
+
+        if (mForests != null)
+            graph.restoreForests(mForests, mColorHash);
+        mForests = null;
+    }
+}
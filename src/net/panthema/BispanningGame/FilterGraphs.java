@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * src/net/panthema/BispanningGame/FilterGraphs.java
+ *
+ * Command line filter selecting the bispanning, atomic or composite graphs
+ * from graph6/sparse6 files, such as the catalogues generated by nauty's geng.
+ *
+ *******************************************************************************
+ * Copyright (C) 2014 Timo Bingmann <tb@panthema.net>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package net.panthema.BispanningGame;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Callable;
+
+/**
+ * The input file is memory mapped, or stdin is read, and cut into line aligned
+ * chunks by a ChunkSource. Each chunk is decoded in place, in the mapped region
+ * or the read buffer, by its own Graph6Reader, and its graphs are tested with
+ * the (2,2)-pebble game on a primitive GraphCSR, in parallel. The accepted
+ * lines are copied unchanged to stdout, in input order, statistics are
+ * printed to stderr.
+ *
+ * Usage: FilterGraphs [-t threads] [-f all|bispanning|atomic|composite]
+ * [file]
+ *
+ * @author Timo Bingmann
+ */
+public class FilterGraphs
+{
+    /** Which graphs to output */
+    enum Filter {
+        ALL, BISPANNING, ATOMIC, COMPOSITE
+    }
+
+    private final Filter mFilter;
+
+    FilterGraphs(Filter filter) {
+        mFilter = filter;
+    }
+
+    /** Test the current graph of the reader */
+    boolean accept(Graph6Reader r) {
+        if (mFilter == Filter.ALL)
+            return true;
+
+        // bispanning graphs have exactly 2n-2 edges
+        if (r.m != 2 * r.n - 2)
+            return false;
+
+        AlgPebbleGame pg = new AlgPebbleGame(r.toCSR());
+        if (!pg.isBispanning())
+            return false;
+
+        if (mFilter == Filter.BISPANNING)
+            return true;
+
+        return pg.isAtomic() == (mFilter == Filter.ATOMIC);
+    }
+
+    /** Accepted lines and counts of one chunk */
+    static class Result
+    {
+        byte[] output;
+        long lines, accepted;
+    }
+
+    /** Task filtering the lines of one chunk */
+    private class ChunkTask implements Callable<Result>
+    {
+        private final ByteBuffer mData;
+
+        ChunkTask(ByteBuffer data) {
+            mData = data;
+        }
+
+        public Result call() throws IOException {
+            Graph6Reader r = new Graph6Reader(mData);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Result res = new Result();
+
+            while (r.next()) {
+                ++res.lines;
+                if (accept(r)) {
+                    ++res.accepted;
+                    r.writeLine(out);
+                }
+            }
+
+            res.output = out.toByteArray();
+            return res;
+        }
+    }
+
+    /** Filter all chunks of the source using numThreads threads into out */
+    Result run(final ChunkSource source, int numThreads, final OutputStream out) throws IOException,
+            InterruptedException {
+        final Result total = new Result();
+
+        new ChunkExecutor<Result>() {
+            Callable<Result> next() throws IOException {
+                ByteBuffer data = source.next();
+                return (data == null) ? null : new ChunkTask(data);
+            }
+
+            void consume(Result r) throws IOException {
+                out.write(r.output);
+                total.lines += r.lines;
+                total.accepted += r.accepted;
+            }
+        }.run(numThreads);
+
+        out.flush();
+        return total;
+    }
+
+    static void usage() {
+        System.err.println("Usage: FilterGraphs [-t threads] [-f all|bispanning|atomic|composite] [file]");
+        System.exit(1);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        Filter filter = Filter.BISPANNING;
+
+        int i = 0;
+        try {
+            for (; i < args.length && args[i].startsWith("-"); i += 2) {
+                if (i + 1 >= args.length)
+                    usage();
+
+                String a = args[i + 1];
+                if (args[i].equals("-t"))
+                    numThreads = Integer.parseInt(a);
+                else if (args[i].equals("-f"))
+                    filter = Filter.valueOf(a.toUpperCase());
+                else
+                    usage();
+            }
+        }
+        catch (IllegalArgumentException e) {
+            usage();
+        }
+
+        if (args.length - i > 1 || numThreads < 1)
+            usage();
+
+        ChunkSource source = (i < args.length) ? ChunkSource.open(new File(args[i])) : ChunkSource.open(System.in);
+        OutputStream out = new BufferedOutputStream(System.out, 1 << 16);
+
+        long t0 = System.nanoTime();
+        Result r = new FilterGraphs(filter).run(source, numThreads, out);
+        double secs = (System.nanoTime() - t0) / 1e9;
+
+        System.err.println("lines=" + r.lines + " accepted=" + r.accepted + " bytes=" + source.getPosition()
+                + " time=" + String.format("%.3f", secs) + "s rate="
+                + String.format("%.1f", source.getPosition() / secs / 1e6) + "MB/s");
+    }
+}
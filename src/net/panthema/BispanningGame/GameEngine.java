@@ -0,0 +1,302 @@
+/*******************************************************************************
+ * src/net/panthema/BispanningGame/GameEngine.java
+ *
+ * Rules and state of a bispanning game, without any user interface: turn
+ * counting, whose move it is, legal moves and Bob's choice of fix.
+ *
+ *******************************************************************************
+ * Copyright (C) 2014 Timo Bingmann <tb@panthema.net>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package net.panthema.BispanningGame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Alice flips an edge, which closes a cycle, then Bob flips another edge of
+ * this cycle which also lies in the cut of Alice's edge. Each move has an
+ * apply method which calculates everything at once. For the user interface,
+ * the moves are also split into begin, compute and finish parts: only compute
+ * is expensive, it works on an ExchangeAnalysis snapshot and may run on
+ * another thread.
+ *
+ * The engine logs each move by calling log(), which does nothing unless
+ * overridden.
+ *
+ * @author Timo Bingmann
+ */
+class GameEngine
+{
+    /** The game graph */
+    private MyGraph mGraph;
+
+    /** Number of turns played in game */
+    private int mTurnNum = 0;
+
+    /** Edge flipped by Alice in the current round */
+    private MyEdge mMarkedge = null;
+
+    /** Flag if Alice's edge closed a cycle which Bob has to fix */
+    private boolean mHaveCycle = false;
+
+    /** Allow freer non-unique edge exchanges */
+    private boolean mAllowFreeExchange = true;
+
+    /** Mark the whole cut of Alice's edge, which is only needed to display it */
+    private boolean mMarkCut = false;
+
+    /** Database of solved positions used to choose Bob's fix, may be null */
+    private PositionDB mPositionDB = null;
+
+    /** Called with a description of each move */
+    void log(String msg) {
+    }
+
+    /** Start a new game on g, its current colors are the original ones */
+    void newGame(MyGraph g) {
+        restoreGame(g, 0);
+        mGraph.updateOriginalColor();
+    }
+
+    /**
+     * Continue a saved game on g with its colors and original colors, in which
+     * turnNum turns were played and Alice is to move.
+     */
+    void restoreGame(MyGraph g, int turnNum) {
+        mGraph = g;
+        mGraph.graphChanged();
+
+        mMarkedge = null;
+        mHaveCycle = false;
+        mTurnNum = turnNum;
+    }
+
+    /** Restart the game from the current colors */
+    void resetColors() {
+        mGraph.updateOriginalColor();
+        mTurnNum = 0;
+    }
+
+    MyGraph getGraph() {
+        return mGraph;
+    }
+
+    /** Return the number of moves made by Alice and Bob */
+    int getTurnNum() {
+        return mTurnNum;
+    }
+
+    /** Return the number of the current round */
+    int getRound() {
+        return mTurnNum / 2 + 1;
+    }
+
+    /** Return the number of rounds needed if Alice flips two edges each */
+    int getMinRounds() {
+        return mGraph.getEdgeCount() / 2;
+    }
+
+    /** Return the edge Alice flipped in the current round */
+    MyEdge getMarkedEdge() {
+        return mMarkedge;
+    }
+
+    /** Return true if Bob has to move */
+    boolean haveCycle() {
+        return mHaveCycle;
+    }
+
+    boolean isAllowFreeExchange() {
+        return mAllowFreeExchange;
+    }
+
+    void setAllowFreeExchange(boolean allowFreeExchange) {
+        mAllowFreeExchange = allowFreeExchange;
+    }
+
+    void setMarkCut(boolean markCut) {
+        mMarkCut = markCut;
+    }
+
+    void setPositionDB(PositionDB db) {
+        mPositionDB = db;
+    }
+
+    /** Return true if all edges are flipped and Alice is to move */
+    boolean isFinished() {
+        return !mHaveCycle && mGraph.finishedEdges() == mGraph.getEdgeCount();
+    }
+
+    /** Test if Alice may flip e now */
+    boolean isLegalAliceMove(MyEdge e) {
+        return !mHaveCycle && (e.isUE || mAllowFreeExchange);
+    }
+
+    /** Test if Bob may flip e now */
+    boolean isLegalBobMove(MyEdge e) {
+        return mHaveCycle && e.isFix && e != mMarkedge;
+    }
+
+    /** Return the edges the player to move may flip */
+    List<MyEdge> legalMoves() {
+        List<MyEdge> list = new ArrayList<MyEdge>();
+
+        for (MyEdge ei : mGraph.getEdges()) {
+            if (mHaveCycle ? isLegalBobMove(ei) : isLegalAliceMove(ei))
+                list.add(ei);
+        }
+
+        return list;
+    }
+
+    /** Flip Alice's edge e and return a snapshot for computeAliceMove() */
+    ExchangeAnalysis beginAliceMove(MyEdge e) {
+        log("Turn " + (++mTurnNum) + ": Alice flips edge " + e.id + " " + e.colorName(false) + " -> " + e.colorName(true) + ".");
+        e.flipColor();
+        mMarkedge = e;
+
+        ExchangeAnalysis a = new ExchangeAnalysis(mGraph);
+        a.setMarkCut(mMarkCut);
+        return a;
+    }
+
+    /** Calculate the cycle closed by Alice's edge e and its fixes */
+    static void computeAliceMove(ExchangeAnalysis a, MyEdge e) {
+        a.calcCycleFixes(a.indexOf(e));
+    }
+
+    /** Apply the results of computeAliceMove() */
+    void finishAliceMove(ExchangeAnalysis a) {
+        a.publish();
+        mHaveCycle = a.haveCycle();
+    }
+
+    /** Let Alice flip e, return false if the move is illegal */
+    boolean applyAliceMove(MyEdge e) {
+        if (!isLegalAliceMove(e))
+            return false;
+
+        ExchangeAnalysis a = beginAliceMove(e);
+        computeAliceMove(a, e);
+        finishAliceMove(a);
+        return true;
+    }
+
+    /**
+     * Return Bob's legal moves in order of preference: with a solved position
+     * those delaying Alice most, otherwise he prefers to re-color already
+     * flipped edges.
+     */
+    List<MyEdge> bobCandidates() {
+        List<MyEdge> fix1list = new ArrayList<MyEdge>();
+        List<MyEdge> fix2list = new ArrayList<MyEdge>();
+
+        for (MyEdge ei : mGraph.getEdges()) {
+            if (isLegalBobMove(ei)) {
+                if (ei.color != ei.origColor) {
+                    fix1list.add(ei);
+                }
+                else {
+                    fix2list.add(ei);
+                }
+            }
+        }
+
+        fix1list.addAll(fix2list);
+
+        // the database is only valid for the rule set it was solved for
+        if (mPositionDB != null && mPositionDB.matches(mAllowFreeExchange)) {
+            final int[] rounds = new int[fix1list.size()];
+            boolean known = true;
+
+            for (int i = 0; i < rounds.length; ++i) {
+                rounds[i] = mPositionDB.getRoundsAfterFlip(mGraph, fix1list.get(i));
+                if (rounds[i] < 0)
+                    known = false;
+            }
+
+            if (known) {
+                Integer[] order = new Integer[rounds.length];
+                for (int i = 0; i < order.length; ++i)
+                    order[i] = i;
+
+                Arrays.sort(order, new Comparator<Integer>() {
+                    public int compare(Integer a, Integer b) {
+                        return rounds[b] - rounds[a];
+                    }
+                });
+
+                List<MyEdge> sorted = new ArrayList<MyEdge>(order.length);
+                for (int i : order)
+                    sorted.add(fix1list.get(i));
+                fix1list = sorted;
+            }
+        }
+
+        return fix1list;
+    }
+
+    /** Return a snapshot for computeBobMove() */
+    ExchangeAnalysis beginBobMove() {
+        return new ExchangeAnalysis(mGraph);
+    }
+
+    /**
+     * Find the first candidate which fixes the cycle and calculate the unique
+     * exchanges after flipping it. Returns null if none fixes the cycle.
+     */
+    static MyEdge computeBobMove(ExchangeAnalysis a, List<MyEdge> candidates) {
+        MyEdge fix = a.calcFix(candidates);
+        if (fix != null)
+            a.calcUniqueExchanges();
+        return fix;
+    }
+
+    /** Flip Bob's edge found by computeBobMove() and apply the results */
+    boolean finishBobMove(ExchangeAnalysis a, MyEdge fix) {
+        if (fix == null)
+            return false;
+
+        log("Turn " + (++mTurnNum) + ": Bob flips edge " + fix.id + " " + fix.colorName(false) + " -> " + fix.colorName(true) + ".");
+        fix.flipColor();
+        a.publish();
+        mHaveCycle = false;
+        return true;
+    }
+
+    /** Let Bob flip f, return false if the move is illegal */
+    boolean applyBobMove(MyEdge f) {
+        if (!isLegalBobMove(f))
+            return false;
+
+        ExchangeAnalysis a = beginBobMove();
+        return finishBobMove(a, computeBobMove(a, Collections.singletonList(f)));
+    }
+
+    /** Let Bob play his preferred move, return it or null if none exists */
+    MyEdge playBob() {
+        if (!mHaveCycle)
+            return null;
+
+        ExchangeAnalysis a = beginBobMove();
+        MyEdge fix = computeBobMove(a, bobCandidates());
+        return finishBobMove(a, fix) ? fix : null;
+    }
+}
@@ -53,6 +53,11 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import javax.imageio.ImageIO;
 import javax.swing.AbstractAction;
@@ -65,6 +70,7 @@ import javax.swing.JPanel;
 import javax.swing.JPopupMenu;
 import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
 import javax.swing.Timer;
 import javax.swing.filechooser.FileNameExtensionFilter;
 
@@ -125,26 +131,36 @@ public class GamePanel extends javax.swing.JPanel
     /** Edge over which the mouse hovers */
     protected MyEdge mHoverEdge;
 
-    /** Number of turns played in game */
-    protected int mTurnNum = 0;
-
-    /** Edge marked by Alice */
-    protected MyEdge mMarkedge = null;
+    /** Game rules and state */
+    protected final GameEngine mEngine = new GameEngine() {
+        void log(String msg) {
+            putLog(msg);
+        }
+    };
 
     /** Flag whether to automatically play Bob's part */
     protected boolean mAutoPlayBob = true;
 
-    /** Flag if a cycle/cut exists in the graph */
-    protected boolean mHaveCycle = false;
-
     /** Scale the edge stroke thickness using mouse wheel */
     float edgeScale = 2.0f;
 
     /** Generate only random atomic bispannings graphs */
     protected boolean generateOnlyAtomic = false;
 
-    /** Allow freer non-unique edge exchanges */
-    protected boolean allowFreeExchange = true;
+    /** Flag if an exchange analysis is running, which blocks moves */
+    protected boolean mComputing = false;
+
+    /** Thread calculating exchange analyses off the event dispatch thread */
+    protected final ExecutorService mCompute = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "BispanningGame-compute");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    /** Database of solved positions of the named graphs, may be null */
+    protected PositionDB mPositionDB = PositionDB.openDefault();
 
     /** Image of Alice and Bob */
     BufferedImage ImageAlice, ImageBob;
@@ -153,6 +169,9 @@ public class GamePanel extends javax.swing.JPanel
 
         makeActions();
 
+        mEngine.setPositionDB(mPositionDB);
+        mEngine.setMarkCut(true);
+
         setBackground(Color.WHITE);
 
         ImageAlice = ImageIO.read(getClass().getClassLoader().getResourceAsStream("net/panthema/BispanningGame/images/Alice.png"));
@@ -368,9 +387,9 @@ public class GamePanel extends javax.swing.JPanel
         public Stroke transform(MyEdge e) {
 
             int size = (e.inCycle || e.inCut || e.isUE) ? THICK : THIN;
-            if (allowFreeExchange) size = THICK;
+            if (mEngine.isAllowFreeExchange()) size = THICK;
 
-            if (e == mHoverEdge && (e.isUE || allowFreeExchange))
+            if (e == mHoverEdge && (e.isUE || mEngine.isAllowFreeExchange()))
                 size += 2;
 
             float[] dash_cut = { size * edgeScale };
@@ -461,7 +480,7 @@ public class GamePanel extends javax.swing.JPanel
             g.setFont(font);
             g.setStroke(new BasicStroke(2));
 
-            if (!mHaveCycle) {
+            if (!mEngine.haveCycle()) {
                 g.setColor(highLight);
                 g.fillRoundRect(0, 0, 103, AliceHeight + sheight + 6, 20, 20);
                 g.setColor(high);
@@ -476,7 +495,7 @@ public class GamePanel extends javax.swing.JPanel
             g.drawImage(ImageAlice, 4, 6, 100, AliceHeight, 0, 0, ImageAlice.getWidth(), ImageAlice.getHeight(), null);
             g.drawString("Alice", (100 - swidthAlice) / 2, AliceHeight + sheight - 3);
 
-            if (mHaveCycle) {
+            if (mEngine.haveCycle()) {
                 g.setColor(highLight);
                 g.fillRoundRect(d.width - 105, d.height - BobHeight - sheight - 8, 103, BobHeight + sheight + 6, 20, 20);
                 g.setColor(high);
@@ -547,7 +566,7 @@ public class GamePanel extends javax.swing.JPanel
         public void mouseClicked(MouseEvent e) {
 
             // no mouse click when Bob is playing!
-            if (mHaveCycle && mAutoPlayBob)
+            if ((mEngine.haveCycle() && mAutoPlayBob) || mComputing)
                 return;
 
             if ((e.getModifiers() & MouseEvent.CTRL_MASK) != 0) {
@@ -570,42 +589,32 @@ public class GamePanel extends javax.swing.JPanel
 
             System.err.println("toggle " + edge);
 
-            if (!mHaveCycle) {
-                if (edge.isUE || allowFreeExchange) {
-                    putLog("Turn " + (++mTurnNum) + ": Alice flips edge " + edge.id + " " + edge.colorName(false) + " -> " + edge.colorName(true) + ".");
-                    edge.flipColor();
+            if (!mEngine.haveCycle()) {
+                if (mEngine.isLegalAliceMove(edge)) {
+                    final ExchangeAnalysis a = mEngine.beginAliceMove(edge);
+                    updateGraphMessage();
 
-                    mMarkedge = edge;
-                    mHaveCycle = mGraph.markCycleFixes(edge);
+                    runAnalysis(new AnalysisTask(a) {
+                        void compute() {
+                            GameEngine.computeAliceMove(a, edge);
+                        }
 
-                    if (mAutoPlayBob) {
-                        mPlayBob.start();
-                    }
+                        void publish() {
+                            mEngine.finishAliceMove(a);
 
-                    updateGraphMessage();
+                            if (mEngine.haveCycle() && mAutoPlayBob) {
+                                mPlayBob.start();
+                            }
+                        }
+                    });
                 }
             }
             else {
-                if (!edge.inCycle) {
-                    System.out.println("Edge not in Cycle! Ignoring");
+                if (!mEngine.isLegalBobMove(edge)) {
+                    System.out.println("Edge does not solve cycle! Ignoring");
                 }
                 else {
-                    edge.flipColor();
-
-                    if (mGraph.markCycle(edge)) {
-                        System.out.println("Edge does not solve cycle! Ignoring");
-                        edge.flipColor();
-                        mGraph.markCycle(mMarkedge);
-                    }
-                    else {
-                        // flip edge
-                        putLog("Turn " + (++mTurnNum) + ": Bob flips edge " + edge.id + " " + edge.colorName(true) + " -> " + edge.colorName(false) + ".");
-
-                        mHaveCycle = false;
-                        mGraph.calcUniqueExchanges();
-                    }
-
-                    updateGraphMessage();
+                    playBob(Collections.singletonList(edge));
                 }
             }
 
@@ -711,50 +720,89 @@ public class GamePanel extends javax.swing.JPanel
     Timer mPlayBob = new Timer(1000, new ActionListener() {
         @Override
         public void actionPerformed(ActionEvent e) {
-            // markCycleFixes has set isFix for all fix edges.
-            ArrayList<MyEdge> fix1list = new ArrayList<MyEdge>();
-            ArrayList<MyEdge> fix2list = new ArrayList<MyEdge>();
-            // Bob prefers to re-color already flipped edges: fix1list
-
-            for (MyEdge ei : mGraph.getEdges()) {
-                if (ei.isFix && ei != mMarkedge) {
-                    if (ei.color != ei.origColor) {
-                        fix1list.add(ei);
-                    }
-                    else {
-                        fix2list.add(ei);
-                    }
-                }
-            }
+            playBob(mEngine.bobCandidates());
+        }
+    });
 
-            fix1list.addAll(fix2list);
+    /**
+     * Let Bob flip the first of the candidate edges which fixes the cycle,
+     * and calculate the unique exchanges of the new coloring.
+     */
+    void playBob(final List<MyEdge> candidates) {
+        final ExchangeAnalysis a = mEngine.beginBobMove();
 
-            for (MyEdge eFix : fix1list) {
-                // flip edge
-                putLog("Turn " + (++mTurnNum) + ": Bob flips edge " + eFix.id + " " + eFix.colorName(false) + " -> " + eFix.colorName(true) + ".");
+        runAnalysis(new AnalysisTask(a) {
+            MyEdge mFix;
 
-                eFix.flipColor();
+            void compute() {
+                mFix = GameEngine.computeBobMove(a, candidates);
+            }
 
-                if (mGraph.markCycle(eFix)) {
-                    System.out.println("Edge does not solve cycle! Ignoring");
-                    eFix.flipColor();
-                    mGraph.markCycle(mMarkedge);
-                }
-                else {
-                    mHaveCycle = false;
-                    mGraph.calcUniqueExchanges();
-                    break;
+            void publish() {
+                if (!mEngine.finishBobMove(a, mFix)) {
+                    System.out.println("Bob could not fix the graph?");
                 }
             }
+        });
+    }
+
+    /**
+     * Analysis of a coloring snapshot: compute() runs on the compute thread,
+     * then publish() runs on the event dispatch thread, unless the graph was
+     * changed in the meantime.
+     */
+    abstract class AnalysisTask implements Runnable
+    {
+        final ExchangeAnalysis mAnalysis;
+
+        AnalysisTask(ExchangeAnalysis a) {
+            mAnalysis = a;
+        }
 
-            if (mHaveCycle) {
-                System.out.println("Bob could not fix the graph?");
+        /** Calculate on the snapshot */
+        abstract void compute();
+
+        /** Apply the results to the graph */
+        abstract void publish();
+
+        public void run() {
+            try {
+                compute();
             }
+            catch (RuntimeException e) {
+                e.printStackTrace();
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        mComputing = false;
+                    }
+                });
+                return;
+            }
+
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    mComputing = false;
+
+                    if (!mAnalysis.isCurrent(mGraph)) {
+                        System.out.println("Graph changed during analysis, discarding result.");
+                        return;
+                    }
 
-            updateGraphMessage();
-            repaint();
+                    publish();
+                    updateGraphMessage();
+                    repaint();
+                    if (mVV != null)
+                        mVV.repaint();
+                }
+            });
         }
-    });
+    }
+
+    /** Start an analysis task on the compute thread */
+    void runAnalysis(AnalysisTask task) {
+        mComputing = true;
+        mCompute.execute(task);
+    }
 
     AbstractAction[] actionRandomGraph = new AbstractAction[20 + 1];
     ArrayList<AbstractAction> actionNamedGraph = new ArrayList<AbstractAction>();
@@ -889,157 +937,17 @@ public class GamePanel extends javax.swing.JPanel
 
         // Special Named Graphs
 
-        actionNamedGraph.add(new AbstractAction("K4 (complete, 4 vertices)") {
-            private static final long serialVersionUID = 571719411573657791L;
+        for (int i = 0; i < NamedGraphs.size(); ++i) {
+            final String graphString = NamedGraphs.getGraphString(i);
 
-            public void actionPerformed(ActionEvent e) {
-                loadGraphString("V4:i0x0y0/i1x1y0/i2x1y1/i3x0y1/;E6:i0t0h1c1/i1t0h2c1/i2t0h3c2/i3t1h2c2/i4t1h3c2/i5t2h3c1/;");
-            }
-        });
-
-        actionNamedGraph.add(new AbstractAction("W5 (wheel, 5 vertices)") {
-            private static final long serialVersionUID = 571719411573657792L;
-
-            public void actionPerformed(ActionEvent e) {
-                loadGraphString("V5:i0x10y10/i1x10y0/i2x0y10/i3x10y20/i4x20y10/;E8:i0t0h1c1/i1t1h2c1/i2t2h0c2/i3t2h3c1/i4t3h0c2/i5t3h4c1/i6t4h0c2/i7t4h1c2/;");
-            }
-        });
-
-        actionNamedGraph.add(new AbstractAction("K4 + K4 (2-clique sum, 6 vertices)") {
-            private static final long serialVersionUID = 571719411573657793L;
-
-            public void actionPerformed(ActionEvent e) {
-                loadGraphString("V6:i0x0y0/i1x1y0/i2x1y1/i3x0y1/i4x2y0/i5x2y1/;E10:i0t0h1c1/i1t0h2c2/i2t0h3c1/i4t1h3c2/i5t2h3c2/i6t1h4c2/i7t1h5c1/i9t4h5c2/i10t4h2c1/i11t2h5c1/;");
-            }
-        });
-
-        actionNamedGraph.add(new AbstractAction("B 6,12 difficult (6 vertices)") {
-            private static final long serialVersionUID = 571719411573457792L;
-
-            public void actionPerformed(ActionEvent e) {
-                loadGraphString("V6:i0x0y12/i1x20y15/i2x40y12/i3x10y30/i4x20y0/i5x30y30/;E10:i0t0h3c2/i1t1h3c1/i2t2h3c1/i3t0h4c1/i4t1h4c2/i5t2h4c2/i6t0h5c1/i7t1h5c2/i8t2h5c1/i9t3h5c2/;");
-            }
-        });
-
-        actionNamedGraph.add(new AbstractAction("W6 (wheel, 6 vertices)") {
-            private static final long serialVersionUID = 571719411573657794L;
-
-            public void actionPerformed(ActionEvent e) {
-                loadGraphString("V6:i0x0y0/i1x0y-1000/i2x-951y-309/i3x-588y809/i4x588y809/i5x951y-309/;E10:i0t0h1c1/i1t1h2c1/i2t0h2c2/i3t2h3c1/i4t0h3c2/i5t3h4c1/i6t0h4c2/i7t4h5c1/i8t0h5c2/i9t5h1c2/;");
-            }
-        });
-
-        actionNamedGraph.add(new AbstractAction("B7,1 triangle free (7 vertices)") {
-            private static final long serialVersionUID = 571719411573657796L;
-
-            public void actionPerformed(ActionEvent e) {
-                loadGraphString("V7:i0x2y0/i1x2y2/i2x2y4/i3x0y1/i4x0y3/i5x4y1/i6x4y3/;E12:i0t3h0c2/i1t3h1c1/i2t3h2c1/i3t4h0c2/i4t4h1c2/i5t4h2c1/i6t5h0c1/i7t5h1c2/i8t5h2c2/i9t6h0c1/i10t6h1c1/i11t6h2c2/;");
-            }
-        });
-
-        actionNamedGraph.add(new AbstractAction("B8,1 triangle free (8 vertices)") {
-            private static final long serialVersionUID = 571719411573657798L;
-
-            public void actionPerformed(ActionEvent e) {
-                loadGraphString("V8:i0x10y20/i1x20y10/i2x40y35/i3x0y35/i4x40y15/i5x0y15/i6x30y30/i7x20y40/;E14:i0t0h4c1/i1t1h4c2/i2t2h4c1/i3t0h5c1/i4t1h5c2/i5t3h5c2/i6t0h6c2/i7t1h6c1/i8t2h6c2/i9t3h6c1/i10t0h7c2/i11t1h7c1/i12t2h7c1/i13t3h7c2/;");
-            }
-        });
-
-        actionNamedGraph.add(new AbstractAction("B9,1 difficult (9 vertices)") {
-            private static final long serialVersionUID = 571719411573657796L;
-
-            public void actionPerformed(ActionEvent e) {
-                loadGraphString("V9:i0x1y0/i1x3y2/i2x1y2/i3x1y1/i4x3y1/i5x0y1/i6x0y2/i7x2y2/i8x2y1/;E16:i0t0h4c1/i1t1h4c1/i2t0h5c2/i3t2h5c2/i4t3h5c1/i5t0h6c2/i6t2h6c1/i7t3h6c2/i8t1h7c1/i9t2h7c1/i10t3h7c2/i11t4h7c2/i12t0h8c1/i13t1h8c2/i14t2h8c2/i15t3h8c1/;");
-            }
-        });
-
-        actionNamedGraph.add(new AbstractAction("2x2 K4 grid (9 vertices)") {
-            private static final long serialVersionUID = 571719411573657796L;
-
-            public void actionPerformed(ActionEvent e) {
-                loadGraphString("V9:i0x0y0/i1x1y0/i2x2y0/i3x0y1/i4x1y1/i5x2y1/i6x0y2/i7x1y2/i8x2y2/;E16:i0t0h1c1/i1t0h4c2/i2t0h3c2/i3t1h2c2/i4t1h3c2/i5t1h5c1/i6t2h4c1/i7t2h5c1/i8t3h6c1/i9t3h7c1/i10t4h6c1/i11t4h8c2/i12t5h7c2/i13t5h8c2/i14t6h7c2/i15t7h8c1/;");
-            }
-        });
-
-        actionNamedGraph.add(new AbstractAction("B10,1 difficult (10 vertices)") {
-            private static final long serialVersionUID = 571419411573657796L;
-
-            public void actionPerformed(ActionEvent e) {
-                loadGraphString("V10:i0x20y6/i1x0y-25/i2x0y25/i3x-20y6/i4x30y-12/i5x-30y13/i6x30y13/i7x-30y-12/i8x-10y-10/i9x10y-10/;E18:i0t0h4c1/i1t1h4c2/i2t0h5c2/i3t2h5c1/i4t2h6c2/i5t3h6c1/i6t4h6c2/i7t1h7c1/i8t3h7c2/i9t5h7c1/i10t0h8c1/i11t1h8c2/i12t2h8c1/i13t3h8c2/i14t0h9c2/i15t1h9c1/i16t2h9c2/i17t3h9c1/;");
-            }
-        });
-
-        actionNamedGraph.add(new AbstractAction("B10,2 difficult (10 vertices)") {
-            private static final long serialVersionUID = 571419411573657796L;
-
-            public void actionPerformed(ActionEvent e) {
-                loadGraphString("V10:i0x10y10/i1x10y20/i2x30y20/i3x30y10/i4x0y25/i5x40y5/i6x40y25/i7x0y5/i8x20y10/i9x20y20/;E18:i0t0h4c2/i1t1h4c1/i2t2h5c2/i3t3h5c1/i4t2h6c1/i5t3h6c2/i6t4h6c1/i7t0h7c1/i8t1h7c2/i9t5h7c2/i10t0h8c1/i11t1h8c1/i12t2h8c2/i13t3h8c2/i14t0h9c2/i15t1h9c2/i16t2h9c1/i17t3h9c1/;");
-            }
-        });
-
-        actionNamedGraph.add(new AbstractAction("B11,1 difficult (11 vertices)") {
-            private static final long serialVersionUID = 571419411573657796L;
-
-            public void actionPerformed(ActionEvent e) {
-                loadGraphString("V11:i0x30y24/i1x0y24/i2x15y0/i3x25y17/i4x5y17/i5x15y20/i6x30y8/i7x0y8/i8x20y8/i9x15y30/i10x10y8/;E20:i0t0h5c1/i1t1h5c2/i2t0h6c2/i3t2h6c2/i4t3h6c1/i5t1h7c1/i6t2h7c1/i7t4h7c2/i8t2h8c2/i9t3h8c1/i10t4h8c1/i11t5h8c2/i12t0h9c2/i13t1h9c1/i14t3h9c2/i15t4h9c1/i16t2h10c1/i17t3h10c2/i18t4h10c2/i19t5h10c1/;");
-            }
-        });
-
-        actionNamedGraph.add(new AbstractAction("B11,2 difficult (11 vertices)") {
-            private static final long serialVersionUID = 571419411573657797L;
-
-            public void actionPerformed(ActionEvent e) {
-                loadGraphString("V11:i0x3y2/i1x1y2/i2x3y1/i3x1y1/i4x4y1/i5x0y1/i6x4y2/i7x0y2/i8x2y2/i9x2y0/i10x2y1/;E20:i0t0h4c1/i1t1h5c2/i2t0h6c2/i3t2h6c1/i4t4h6c2/i5t1h7c1/i6t3h7c2/i7t5h7c1/i8t0h8c2/i9t1h8c1/i10t2h8c1/i11t3h8c2/i12t2h9c2/i13t3h9c1/i14t4h9c2/i15t5h9c1/i16t0h10c1/i17t1h10c2/i18t2h10c2/i19t3h10c1/;");
-            }
-        });
-
-        actionNamedGraph.add(new AbstractAction("B12,1 difficult (12 vertices)") {
-            private static final long serialVersionUID = 571419411573657796L;
-
-            public void actionPerformed(ActionEvent e) {
-                loadGraphString("V12:i0x30y30/i1x10y30/i2x30y0/i3x10y0/i4x25y10/i5x20y20/i6x40y20/i7x0y20/i8x30y20/i9x10y20/i10x15y10/i11x20y0/;E22:i0t0h5c1/i1t1h5c2/i2t0h6c2/i3t2h6c1/i4t1h7c1/i5t3h7c2/i6t1h8c1/i7t2h8c2/i8t4h8c1/i9t6h8c2/i10t0h9c2/i11t3h9c1/i12t4h9c2/i13t7h9c1/i14t2h10c1/i15t3h10c1/i16t4h10c2/i17t5h10c2/i18t2h11c2/i19t3h11c2/i20t4h11c1/i21t5h11c1/;");
-            }
-        });
-
-        actionNamedGraph.add(new AbstractAction("B12,2 difficult (12 vertices)") {
-            private static final long serialVersionUID = 571419411573657796L;
-
-            public void actionPerformed(ActionEvent e) {
-                loadGraphString("V12:i0x10y0/i1x30y0/i2x30y20/i3x15y30/i4x12y40/i5x40y30/i6x0y10/i7x40y10/i8x25y30/i9x10y20/i10x0y30/i11x28y40/;E22:i0t0h5c1/i1t1h5c2/i2t0h6c1/i3t2h6c1/i4t1h7c2/i5t2h7c2/i6t2h8c1/i7t3h8c1/i8t4h8c2/i9t5h8c2/i10t1h9c1/i11t3h9c1/i12t4h9c2/i13t6h9c2/i14t0h10c2/i15t3h10c2/i16t4h10c1/i17t7h10c1/i18t2h11c2/i19t3h11c2/i20t4h11c1/i21t5h11c1/;");
-            }
-        });
-
-        actionNamedGraph.add(new AbstractAction("B12,3 difficult (12 vertices)") {
-            private static final long serialVersionUID = 571419411573657796L;
-
-            public void actionPerformed(ActionEvent e) {
-                loadGraphString("V12:i0x10y5/i1x10y25/i2x30y10/i3x30y20/i4x10y10/i5x10y20/i6x30y5/i7x30y25/i8x20y10/i9x3y15/i10x37y15/i11x20y20/;E22:i0t0h4c2/i1t1h5c1/i2t0h6c1/i3t2h6c2/i4t1h7c2/i5t3h7c1/i6t2h8c1/i7t3h8c2/i8t4h8c2/i9t5h8c1/i10t0h9c1/i11t1h9c2/i12t4h9c1/i13t5h9c2/i14t2h10c1/i15t3h10c2/i16t6h10c1/i17t7h10c2/i18t2h11c2/i19t3h11c1/i20t4h11c1/i21t5h11c2/;");
-            }
-        });
-
-        actionNamedGraph.add(new AbstractAction("B12,4 difficult (12 vertices)") {
-            private static final long serialVersionUID = 571419411573657796L;
-
-            public void actionPerformed(ActionEvent e) {
-                loadGraphString("V12:i0x10y10/i1x25y20/i2x40y10/i3x40y0/i4x10y0/i5x10y20/i6x50y10/i7x0y10/i8x40y20/i9x20y10/i10x30y10/i11x25y0/;E22:i0t0h5c1/i1t1h5c2/i2t2h6c1/i3t3h6c2/i4t0h7c2/i5t4h7c1/i6t5h7c2/i7t1h8c1/i8t2h8c2/i9t6h8c1/i10t0h9c1/i11t1h9c2/i12t3h9c1/i13t4h9c2/i14t1h10c1/i15t2h10c2/i16t3h10c1/i17t4h10c2/i18t0h11c2/i19t2h11c1/i20t3h11c2/i21t4h11c1/;");
-            }
-        });
-
-        actionNamedGraph.add(new AbstractAction("3x3 K4 grid (16 vertices)") {
-            private static final long serialVersionUID = 571719411573657796L;
-
-            public void actionPerformed(ActionEvent e) {
-                loadGraphString("V16:i0x0y0/i1x1y0/i2x2y0/i3x3y0/i4x0y1/i5x1y1/i6x2y1/i7x3y1/i8x0y2/i9x1y2/i10x2y2/i11x3y2/i12x0y3/i13x1y3/i14x2y3/i15x3y3/;E30:i0t0h1c1/i1t0h5c2/i2t0h4c2/i3t1h2c1/i4t1h4c2/i5t1h6c2/i6t2h3c2/i7t2h5c2/i8t2h7c1/i9t3h6c1/i10t3h7c1/i11t4h8c1/i12t4h9c1/i13t5h8c1/i14t5h10c1/i15t6h9c1/i16t6h11c2/i17t7h10c2/i18t7h11c2/i19t8h12c2/i20t8h13c2/i21t9h12c2/i22t9h14c2/i23t10h13c2/i24t10h15c1/i25t11h14c1/i26t11h15c1/i27t12h13c1/i28t13h14c1/i29t14h15c2/;");
-            }
-        });
-
-        actionNamedGraph.add(new AbstractAction("B18,1 square-free (18 vertices)") {
-            private static final long serialVersionUID = 571719411573657796L;
+            actionNamedGraph.add(new AbstractAction(NamedGraphs.getName(i)) {
+                private static final long serialVersionUID = 571719411573657791L;
 
-            public void actionPerformed(ActionEvent e) {
-                loadGraphString("V18:i0x0y0/i1x100y0/i2x200y0/i3x300y0/i4x300y100/i5x300y200/i6x200y200/i7x100y200/i8x0y200/i9x0y100/i10x40y40/i11x150y25/i12x260y40/i13x260y160/i14x150y175/i15x40y160/i16x175y70/i17x125y130/;E34:i0t0h1c1/i1t1h2c2/i2t2h3c2/i3t3h4c1/i4t4h5c2/i5t5h6c1/i6t6h7c2/i7t7h8c1/i8t8h9c1/i9t9h0c2/i10t0h10c1/i11t3h12c1/i12t5h13c1/i13t8h15c2/i14t9h16c1/i15t4h17c2/i16t4h11c2/i17t9h14c2/i18t1h15c1/i19t1h17c1/i20t2h16c1/i21t2h13c2/i22t6h12c1/i23t6h16c2/i24t7h17c1/i25t7h10c2/i26t10h11c2/i27t10h13c2/i28t11h16c1/i29t11h15c2/i30t12h15c2/i31t12h14c2/i32t13h14c1/i33t14h17c1/;");
-            }
-        });
+                public void actionPerformed(ActionEvent e) {
+                    loadGraphString(graphString);
+                }
+            });
+        }
     }
 
     AbstractAction getActionNewGraphType() {
@@ -1074,19 +982,18 @@ public class GamePanel extends javax.swing.JPanel
             private static final long serialVersionUID = 571719411573657796L;
 
             public void actionPerformed(ActionEvent e) {
-                mGraph.updateOriginalColor();
-                mTurnNum = 0;
+                mEngine.resetColors();
                 putLog("Resetting game graph's colors.");
                 updateGraphMessage();
                 mVV.repaint();
             }
         });
 
-        popup.add(new AbstractAction(allowFreeExchange ? "Restrict to Unique Exchanges" : "Allow Free Edge Exchanges") {
+        popup.add(new AbstractAction(mEngine.isAllowFreeExchange() ? "Restrict to Unique Exchanges" : "Allow Free Edge Exchanges") {
             private static final long serialVersionUID = 571719411573657798L;
 
             public void actionPerformed(ActionEvent e) {
-                allowFreeExchange = !allowFreeExchange;
+                mEngine.setAllowFreeExchange(!mEngine.isAllowFreeExchange());
                 mVV.repaint();
             }
         });
@@ -1099,6 +1006,14 @@ public class GamePanel extends javax.swing.JPanel
             }
         });
 
+        popup.add(new AbstractAction("Show Hint") {
+            private static final long serialVersionUID = 571719413573657799L;
+
+            public void actionPerformed(ActionEvent e) {
+                showHint();
+            }
+        });
+
         popup.addSeparator();
 
         JMenu newGraph = new JMenu("New Random Graph");
@@ -1139,12 +1054,12 @@ public class GamePanel extends javax.swing.JPanel
             }
         });
 
-        popup.add(new AbstractAction("Show graph6") {
+        popup.add(new AbstractAction("Show graph6/sparse6") {
             private static final long serialVersionUID = 571719411573657792L;
 
             public void actionPerformed(ActionEvent e) {
-                JTextArea text = new JTextArea(Graph6.write_graph6(mGraph));
-                JOptionPane.showMessageDialog(null, text, "graph6 Serialization", JOptionPane.INFORMATION_MESSAGE);
+                JTextArea text = new JTextArea(Graph6.write_compact(mGraph));
+                JOptionPane.showMessageDialog(null, text, "graph6/sparse6 Serialization", JOptionPane.INFORMATION_MESSAGE);
             }
         });
 
@@ -1160,6 +1075,32 @@ public class GamePanel extends javax.swing.JPanel
             }
         });
 
+        popup.add(new AbstractAction("Save Position") {
+            private static final long serialVersionUID = 571719411573657800L;
+
+            public void actionPerformed(ActionEvent e) {
+                try {
+                    savePosition();
+                }
+                catch (IOException e1) {
+                    showStackTrace(e1);
+                }
+            }
+        });
+
+        popup.add(new AbstractAction("Load Position") {
+            private static final long serialVersionUID = 571719411573657801L;
+
+            public void actionPerformed(ActionEvent e) {
+                try {
+                    loadPosition();
+                }
+                catch (IOException e1) {
+                    showStackTrace(e1);
+                }
+            }
+        });
+
         popup.add(new AbstractAction("Read GraphML") {
             private static final long serialVersionUID = 571719411573657794L;
 
@@ -1207,11 +1148,7 @@ public class GamePanel extends javax.swing.JPanel
     }
 
     void makeNewRandomGraph(int numVertex) {
-        MyGraph g;
-        do {
-            g = MyGraph.getRandomGraph(numVertex);
-        } while (numVertex != 0 && generateOnlyAtomic && !g.isAtomicBispanner());
-        setNewGraph(g);
+        setNewGraph(MyGraph.getRandomGraph(numVertex, generateOnlyAtomic));
     }
 
     void relayoutGraph() {
@@ -1224,8 +1161,8 @@ public class GamePanel extends javax.swing.JPanel
     void updateGraphMessage() {
         String msg = "";
 
-        int round = mTurnNum / 2 + 1;
-        int min_rounds = mGraph.getEdgeCount() / 2;
+        int round = mEngine.getRound();
+        int min_rounds = mEngine.getMinRounds();
 
         if (mGraph.getVertexCount() == 0) {
         }
@@ -1295,19 +1232,65 @@ public class GamePanel extends javax.swing.JPanel
         mlTransformer.getTransformer(Layer.LAYOUT).translate(xShift, yShift);
     }
 
+    /** Log Alice's optimal move as found in the position database */
+    void showHint() {
+        if (mPositionDB == null) {
+            putLog("No position database " + PositionDB.DEFAULT_FILE + " loaded.");
+            return;
+        }
+        if (!mPositionDB.matches(mEngine.isAllowFreeExchange())) {
+            putLog("Hint: the position database was solved for "
+                    + (mPositionDB.isUniqueOnly() ? "unique exchanges only." : "free exchanges."));
+            return;
+        }
+        if (mEngine.haveCycle()) {
+            putLog("Hint: Bob has to fix the cycle first.");
+            return;
+        }
+
+        int slot = mPositionDB.find(mGraph.getPositionHash());
+        if (slot < 0) {
+            putLog("Hint: position is not in the database.");
+        }
+        else if (mPositionDB.getRounds(slot) == PositionDB.NEVER) {
+            putLog("Hint: Bob can prevent Alice from ever finishing.");
+        }
+        else if (mPositionDB.getRounds(slot) == 0) {
+            putLog("Hint: all edges are flipped.");
+        }
+        else {
+            MyEdge best = mPositionDB.getBestMove(mGraph);
+            putLog("Hint: flip edge " + best.id + ", Alice needs " + mPositionDB.getRounds(slot) + " more rounds"
+                    + (best.isUE ? "." : " with free exchanges."));
+        }
+    }
+
     void setNewGraph(MyGraph g) {
 
         mGraph = g;
-        mGraph.graphChanged();
+        mEngine.newGame(g);
+
+        showNewGame("Starting new game with " + mGraph.getEdgeCount() + " edges.");
+    }
+
+    /** Continue a saved game, see GameEngine.restoreGame() */
+    void restorePosition(MyGraph g, int turnNum) {
+
+        mGraph = g;
+        mEngine.restoreGame(g, turnNum);
+
+        showNewGame("Restored game in round " + mEngine.getRound() + " with " + mGraph.getEdgeCount() + " edges.");
+    }
+
+    /** Log msg and show the new game graph */
+    private void showNewGame(String msg) {
+
         mHoverEdge = null;
-        mMarkedge = null;
-        mHaveCycle = false;
-        mTurnNum = 0;
-        mNextVertex = g.getVertexCount();
+        mNextVertex = mGraph.getVertexCount();
 
-        putLog("Starting new game with " + mGraph.getEdgeCount() + " edges.");
+        putLog(msg);
 
-        if (mGraph.getVertexCount() > 0 && mGraph.getVertexCount() <= 14) {
+        if (mGraph.getVertexCount() > 0 && mGraph.isBispanning()) {
             if (mGraph.isAtomicBispanner()) {
                 putLog("New graph is an atomic bispanning graph.");
             }
@@ -1316,15 +1299,12 @@ public class GamePanel extends javax.swing.JPanel
             }
         }
 
-        mGraph.calcUniqueExchanges();
-        mGraph.updateOriginalColor();
-
         updateGraphMessage();
 
         if (mVV != null) {
 
-            if (g.mInitialLayout != null)
-                mLayout = g.mInitialLayout;
+            if (mGraph.mInitialLayout != null)
+                mLayout = mGraph.mInitialLayout;
             else
                 mLayout = MyGraphLayoutFactory(mGraph);
 
@@ -1431,6 +1411,48 @@ public class GamePanel extends javax.swing.JPanel
         graphWriter.save(mGraph, out);
     }
 
+    public void savePosition() throws IOException {
+
+        if (mEngine.haveCycle() || mComputing) {
+            putLog("Positions can only be saved when Alice is to move.");
+            return;
+        }
+
+        // Query user for filename
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Specify position file to save");
+        chooser.setCurrentDirectory(new File("."));
+        FileNameExtensionFilter filter = new FileNameExtensionFilter("Bispanning Game Position", "bgpos");
+        chooser.setFileFilter(filter);
+
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION)
+            return;
+
+        File outfile = chooser.getSelectedFile();
+        if (!outfile.getAbsolutePath().endsWith(".bgpos")) {
+            outfile = new File(outfile.getAbsolutePath() + ".bgpos");
+        }
+
+        GraphBinary.write(outfile, mGraph, mLayout, mEngine.getTurnNum());
+        putLog("Saved position of round " + mEngine.getRound() + ".");
+    }
+
+    public void loadPosition() throws IOException {
+
+        // Query user for filename
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Specify position file to load");
+        chooser.setCurrentDirectory(new File("."));
+        FileNameExtensionFilter filter = new FileNameExtensionFilter("Bispanning Game Position", "bgpos");
+        chooser.setFileFilter(filter);
+
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION)
+            return;
+
+        GraphBinary snapshot = new GraphBinary(chooser.getSelectedFile());
+        restorePosition(snapshot.toMyGraph(), snapshot.turnNum);
+    }
+
     public void readGraphML() throws IOException, GraphIOException {
 
         MyGraphMLReader gml = new MyGraphMLReader(this);
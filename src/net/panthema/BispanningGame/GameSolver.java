@@ -0,0 +1,364 @@
+/*******************************************************************************
+ * src/net/panthema/BispanningGame/GameSolver.java
+ *
+ * Headless solver for the bispanning game: calculates the minimum number of
+ * rounds in which Alice can flip all edges against any play of Bob.
+ *
+ *******************************************************************************
+ * Copyright (C) 2014 Timo Bingmann <tb@panthema.net>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package net.panthema.BispanningGame;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In each round Alice flips an edge e, which closes a cycle in the other tree,
+ * and Bob flips one edge f != e of this cycle which also lies in the cut of e,
+ * such that the colors again form two spanning trees. Alice wins once every
+ * edge has a color different from its original one, Bob tries to delay this.
+ *
+ * A position is the vector of current colors, packed into a long with bit i
+ * set if edge i has color 2, hence at most 64 edges are supported. Since the
+ * original colors are fixed, the position also determines the flipped edges.
+ *
+ * The solver uses iterative deepening on the number of remaining rounds k. A
+ * position with u unflipped edges needs at least u/2 rounds, since each round
+ * flips at most two edges. Proven wins (minimum k) and losses (maximum k) are
+ * stored in transposition tables, together with Alice's winning move.
+ *
+ * @author Timo Bingmann
+ */
+class GameSolver
+{
+    /** Graph snapshot, the color array is overwritten by each position */
+    final GraphCSR mGraph;
+
+    /** Position of the original colors */
+    private final long mOrig;
+
+    /** Position in which all edges are flipped */
+    final long mTarget;
+
+    /** Allow Alice only unique exchanges */
+    final boolean mUniqueOnly;
+
+    /** Transposition table: minimum number of rounds proven winnable */
+    private final LongIntTable mWin = new LongIntTable();
+
+    /** Transposition table: maximum number of rounds proven not winnable */
+    private final LongIntTable mFail = new LongIntTable();
+
+    /** Alice's move in winning positions, an edge index */
+    private final LongIntTable mBest = new LongIntTable();
+
+    /** Number of expanded positions */
+    private final AtomicLong mNodes = new AtomicLong();
+
+    /** Scratch space of the sequential search */
+    private Workspace mWorkspace;
+
+    /**
+     * Scratch space of a searching thread: a copy of the snapshot, whose
+     * colors are set to each expanded position, the exchange structure rooted
+     * on it, and a stack of the move lists of the positions being searched.
+     * The move list at base b holds the number of Alice's moves c, c offsets
+     * of move records in search order, and the records (e, number of answers,
+     * answers...). A position's list is popped when its search returns.
+     */
+    static class Workspace
+    {
+        final GraphCSR graph;
+        final AlgUniqueExchanges alg;
+
+        /** Scores of the moves of the position being expanded */
+        final int[] score;
+
+        /** Stack of move lists and its top */
+        int[] stack = new int[1024];
+        int top = 0;
+
+        Workspace(GraphCSR g) {
+            graph = new GraphCSR(g);
+            alg = new AlgUniqueExchanges(graph, false);
+            score = new int[g.m];
+        }
+
+        /** Ensure room for size more ints on the stack */
+        void reserve(int size) {
+            if (top + size > stack.length)
+                stack = Arrays.copyOf(stack, Math.max(top + size, 2 * stack.length));
+        }
+    }
+
+    /** Create solver for the graph and its current original colors */
+    GameSolver(MyGraph g, boolean uniqueOnly) {
+        mGraph = new GraphCSR(g);
+
+        if (mGraph.m > 64)
+            throw new IllegalArgumentException("GameSolver supports at most 64 edges.");
+
+        mUniqueOnly = uniqueOnly;
+
+        long orig = 0;
+        for (int i = 0; i < mGraph.m; ++i) {
+            if (mGraph.edge[i].origColor == 2)
+                orig |= 1L << i;
+        }
+
+        mOrig = orig;
+        mTarget = mOrig ^ allEdges();
+    }
+
+    /** Bit mask of all edges */
+    private long allEdges() {
+        return (mGraph.m == 64) ? -1L : (1L << mGraph.m) - 1;
+    }
+
+    /** Read the position from the current colors of the graph's edges */
+    long currentPosition() {
+        long pos = 0;
+        for (int i = 0; i < mGraph.m; ++i) {
+            if (mGraph.edge[i].color == 2)
+                pos |= 1L << i;
+        }
+        return pos;
+    }
+
+    /** Number of edges not yet flipped in a position */
+    int unflipped(long pos) {
+        return Long.bitCount(pos ^ mTarget);
+    }
+
+    /** Set the colors of the snapshot to a position */
+    static void setPosition(GraphCSR g, long pos) {
+        for (int i = 0; i < g.m; ++i)
+            g.color[i] = ((pos >>> i) & 1) != 0 ? 2 : 1;
+    }
+
+    /** Return the scratch space of the calling thread */
+    Workspace workspace() {
+        if (mWorkspace == null)
+            mWorkspace = new Workspace(mGraph);
+        return mWorkspace;
+    }
+
+    /**
+     * Count an expanded position and push its move list: for each edge e
+     * Alice may flip, the edges Bob may answer with. Alice's moves are ordered
+     * by insertion: those flipping only unflipped edges first, then those
+     * leaving Bob fewer answers. Returns the base of the list.
+     */
+    int expand(Workspace ws, long pos) {
+        mNodes.incrementAndGet();
+
+        setPosition(ws.graph, pos);
+        if (!ws.alg.reroot())
+            throw new IllegalStateException("Position is not two spanning trees.");
+
+        int m = mGraph.m, limit = mUniqueOnly ? 2 : mGraph.n;
+        ws.reserve(1 + m + m * (2 + limit));
+
+        int[] stack = ws.stack, score = ws.score;
+        int base = ws.top, rec = base + 1 + m, count = 0;
+        long unflippedSet = pos ^ mTarget;
+
+        for (int e = 0; e < m; ++e) {
+            int cnt = ws.alg.exchanges(e, stack, rec + 2, limit);
+
+            if (mUniqueOnly && cnt != 1)
+                continue;
+
+            int bad = ((unflippedSet >>> e) & 1) != 0 ? 0 : 1;
+            for (int i = 0; i < cnt; ++i) {
+                if (((unflippedSet >>> stack[rec + 2 + i]) & 1) == 0)
+                    ++bad;
+            }
+
+            stack[rec] = e;
+            stack[rec + 1] = cnt;
+
+            // insert behind all moves with lower or equal score
+            int sc = bad * m + cnt, j = count++;
+            for (; j > 0 && score[j - 1] > sc; --j) {
+                score[j] = score[j - 1];
+                stack[base + 1 + j] = stack[base + j];
+            }
+            score[j] = sc;
+            stack[base + 1 + j] = rec;
+
+            rec += 2 + cnt;
+        }
+
+        stack[base] = count;
+        ws.top = rec;
+        return base;
+    }
+
+    /** Return 1 or 0 if the tables prove pos won or lost in k rounds, else -1 */
+    int lookup(long pos, int k) {
+        int w = mWin.get(pos);
+        if (w >= 0 && w <= k)
+            return 1;
+
+        int f = mFail.get(pos);
+        if (f >= 0 && f >= k)
+            return 0;
+
+        return -1;
+    }
+
+    /** Store that Alice wins pos within k rounds by flipping e */
+    void storeWin(long pos, int k, int e) {
+        mWin.put(pos, k);
+        mBest.put(pos, e);
+    }
+
+    /** Store that Alice cannot win pos within k rounds */
+    void storeFail(long pos, int k) {
+        mFail.put(pos, k);
+    }
+
+    /** Return Alice's stored move in a position proven winnable, or -1 */
+    int storedBest(long pos) {
+        return mBest.get(pos);
+    }
+
+    /**
+     * Decide pos without expanding it: return 1 if Alice wins within k
+     * rounds, 0 if she cannot, or -1 if the position must be searched.
+     */
+    int probe(long pos, int k) {
+        if (pos == mTarget)
+            return 1;
+
+        if (2 * k < unflipped(pos))
+            return 0;
+
+        return lookup(pos, k);
+    }
+
+    /** Return true if Alice can flip all edges within k rounds from pos */
+    boolean win(long pos, int k) {
+        return search(workspace(), pos, k);
+    }
+
+    /** Sequential AND-OR search of win() */
+    private boolean search(Workspace ws, long pos, int k) {
+        int r = probe(pos, k);
+        if (r >= 0)
+            return (r == 1);
+
+        int base = expand(ws, pos);
+        boolean won = false;
+
+        // the stack may be reallocated by the recursion, hence ws.stack
+        for (int i = 0; i < ws.stack[base] && !won; ++i) {
+            int rec = ws.stack[base + 1 + i];
+            int e = ws.stack[rec];
+
+            won = true;
+            for (int j = 0; j < ws.stack[rec + 1] && won; ++j)
+                won = search(ws, pos ^ (1L << e) ^ (1L << ws.stack[rec + 2 + j]), k - 1);
+
+            if (won)
+                storeWin(pos, k, e);
+        }
+
+        ws.top = base;
+
+        if (!won)
+            storeFail(pos, k);
+        return won;
+    }
+
+    /**
+     * Calculate the minimum number of rounds in which Alice can flip all
+     * edges from position pos, or -1 if not possible in maxRounds.
+     */
+    int solve(long pos, int maxRounds) {
+        for (int k = (unflipped(pos) + 1) / 2; k <= maxRounds; ++k) {
+            if (win(pos, k))
+                return k;
+        }
+        return -1;
+    }
+
+    /** Calculate the minimum number of rounds from the current colors */
+    int solve(int maxRounds) {
+        return solve(currentPosition(), maxRounds);
+    }
+
+    /** Return true if Alice can finish in the minimum number of rounds */
+    boolean winsInMinimum() {
+        long pos = currentPosition();
+        return win(pos, (unflipped(pos) + 1) / 2);
+    }
+
+    /** Return Alice's optimal edge to flip in position pos, or -1 */
+    int bestMove(long pos, int maxRounds) {
+        if (solve(pos, maxRounds) <= 0)
+            return -1;
+        return storedBest(pos);
+    }
+
+    /** Return Alice's optimal edge to flip in the current colors, or null */
+    MyEdge bestMove(int maxRounds) {
+        int e = bestMove(currentPosition(), maxRounds);
+        return (e < 0) ? null : mGraph.edge[e];
+    }
+
+    /** Return the number of expanded positions */
+    long getNodes() {
+        return mNodes.get();
+    }
+
+    /**
+     * Solve each GraphString read from stdin, uncolored graphs are colored
+     * first. Option -u allows Alice only unique exchanges.
+     */
+    public static void main(String[] args) throws IOException {
+        boolean uniqueOnly = (args.length > 0 && args[0].equals("-u"));
+
+        BufferedReader br = new BufferedReader(new InputStreamReader(System.in));
+
+        for (String line = br.readLine(); line != null; line = br.readLine()) {
+            if (line.length() == 0)
+                continue;
+
+            MyGraph g = GraphString.read_graph(line);
+
+            if (!new AlgBispanning(g).isOkay()) {
+                System.out.println("Graph is not bispanning!");
+                continue;
+            }
+
+            g.updateOriginalColor();
+
+            long t0 = System.currentTimeMillis();
+            GameSolver solver = new GameSolver(g, uniqueOnly);
+            int rounds = solver.solve(g.getEdgeCount());
+            long t1 = System.currentTimeMillis();
+
+            System.out.println("edges=" + g.getEdgeCount() + " min_rounds=" + (g.getEdgeCount() / 2) + " rounds="
+                    + rounds + " nodes=" + solver.getNodes() + " time=" + (t1 - t0) + "ms");
+        }
+    }
+}
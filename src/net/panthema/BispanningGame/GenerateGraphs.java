@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * src/net/panthema/BispanningGame/GenerateGraphs.java
+ *
+ * Headless bulk generation of random bispanning graphs in parallel, with
+ * reproducible output for a given seed.
+ *
+ *******************************************************************************
+ * Copyright (C) 2014 Timo Bingmann <tb@panthema.net>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package net.panthema.BispanningGame;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+
+/**
+ * The requested graphs are cut into chunks of CHUNK graphs. Each chunk gets
+ * its own SplittableRandom, which is split off the seeded root generator in
+ * chunk order, and the chunks are written in order as well. Hence the output
+ * depends only on the seed and parameters, not on the number of threads.
+ *
+ * Usage: GenerateGraphs [-s seed] [-t threads] [-f any|atomic|composite]
+ * [-o string|graph6|sparse6|auto] vertices count
+ *
+ * With -o auto each graph is written in graph6 or sparse6 format, whichever
+ * is shorter.
+ *
+ * @author Timo Bingmann
+ */
+public class GenerateGraphs
+{
+    /** Which kind of bispanning graphs to output */
+    enum Filter {
+        ANY, ATOMIC, COMPOSITE
+    }
+
+    /** Output format, one graph per line */
+    enum Format {
+        STRING, GRAPH6, SPARSE6, AUTO
+    }
+
+    /** Number of graphs generated by one task */
+    static final int CHUNK = 256;
+
+    /** Number of vertices of the generated graphs */
+    private final int mNumVertex;
+
+    /** Graph filter and output format */
+    private final Filter mFilter;
+    private final Format mFormat;
+
+    /** Construct generator, check that the parameters are satisfiable */
+    GenerateGraphs(int numVertex, Filter filter, Format format) {
+        if (numVertex == 2 || numVertex == 3 || numVertex < 0)
+            throw new IllegalArgumentException("No simple bispanning graph with " + numVertex + " vertices exists.");
+        if (filter == Filter.COMPOSITE && numVertex <= 4)
+            throw new IllegalArgumentException("No composite simple bispanning graph with " + numVertex
+                    + " vertices exists.");
+
+        mNumVertex = numVertex;
+        mFilter = filter;
+        mFormat = format;
+    }
+
+    /** Generate one graph matching the filter */
+    BispanningGenerator generate(SplittableRandom rng) {
+        if (mFilter == Filter.ATOMIC)
+            return new BispanningGenerator(mNumVertex, true, rng);
+
+        while (true) {
+            BispanningGenerator g = new BispanningGenerator(mNumVertex, false, rng);
+
+            if (mFilter == Filter.ANY)
+                return g;
+
+            // rejection sampling: retry until the graph is composite
+            GraphCSR c = new GraphCSR(g.numVertex, g.numEdge, g.tail, g.head);
+            if (!new AlgPebbleGame(c).isAtomic())
+                return g;
+        }
+    }
+
+    /** Format one graph as a line */
+    String format(BispanningGenerator g) {
+        if (mFormat == Format.GRAPH6)
+            return Graph6.write_graph6(g.numVertex, g.numEdge, g.tail, g.head);
+        else if (mFormat == Format.SPARSE6)
+            return Graph6.write_sparse6(g.numVertex, g.numEdge, g.tail, g.head);
+        else if (mFormat == Format.AUTO)
+            return Graph6.write_compact(g.numVertex, g.numEdge, g.tail, g.head);
+        else
+            return GraphString.write_graph(g.toGraph());
+    }
+
+    /** Task generating one chunk of graphs into a string */
+    private class ChunkTask implements Callable<String>
+    {
+        private final SplittableRandom mRng;
+        private final int mCount;
+
+        ChunkTask(SplittableRandom rng, int count) {
+            mRng = rng;
+            mCount = count;
+        }
+
+        public String call() {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < mCount; ++i) {
+                sb.append(format(generate(mRng)));
+                sb.append('\n');
+            }
+            return sb.toString();
+        }
+    }
+
+    /** Generate count graphs from seed using numThreads threads into out */
+    void run(long seed, final long count, int numThreads, final Writer out) throws IOException, InterruptedException {
+        final SplittableRandom root = new SplittableRandom(seed);
+
+        new ChunkExecutor<String>() {
+            long mDone = 0;
+
+            Callable<String> next() {
+                if (mDone == count)
+                    return null;
+
+                int n = (int) Math.min(CHUNK, count - mDone);
+                mDone += n;
+                return new ChunkTask(root.split(), n);
+            }
+
+            void consume(String chunk) throws IOException {
+                out.write(chunk);
+            }
+        }.run(numThreads);
+
+        out.flush();
+    }
+
+    static void usage() {
+        System.err.println("Usage: GenerateGraphs [-s seed] [-t threads] [-f any|atomic|composite]"
+                + " [-o string|graph6|sparse6|auto] vertices count");
+        System.exit(1);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        long seed = System.nanoTime();
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        Filter filter = Filter.ANY;
+        Format format = Format.STRING;
+
+        int i = 0;
+        try {
+            for (; i < args.length && args[i].startsWith("-"); i += 2) {
+                if (i + 1 >= args.length)
+                    usage();
+
+                String a = args[i + 1];
+                if (args[i].equals("-s"))
+                    seed = Long.parseLong(a);
+                else if (args[i].equals("-t"))
+                    numThreads = Integer.parseInt(a);
+                else if (args[i].equals("-f"))
+                    filter = Filter.valueOf(a.toUpperCase());
+                else if (args[i].equals("-o"))
+                    format = Format.valueOf(a.toUpperCase());
+                else
+                    usage();
+            }
+
+            if (args.length - i != 2 || numThreads < 1)
+                usage();
+
+            int numVertex = Integer.parseInt(args[i]);
+            long count = Long.parseLong(args[i + 1]);
+
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+            new GenerateGraphs(numVertex, filter, format).run(seed, count, numThreads, out);
+        }
+        catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            usage();
+        }
+    }
+}
@@ -22,223 +22,375 @@
 
 package net.panthema.BispanningGame;
 
-import java.io.ByteArrayOutputStream;
-
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reader of graph6/sparse6 encoded bytes in a region of a ByteBuffer, such as
+ * a line of a memory mapped file. The six bit groups are decoded into a 64-bit
+ * accumulator, from which bit fields of up to 32 bits are taken in one step.
+ * Invalid characters throw an IllegalArgumentException.
+ */
 class ByteReader6
 {
-    private byte[] mBytes;
-    private int mSize, mPos, mBit;
-
-    public ByteReader6(String s6) {
-        mBytes = s6.getBytes();
-        mSize = s6.length();
-        mPos = mBit = 0;
+    private ByteBuffer mBuf;
+    private int mEnd, mPos;
+
+    /** decoded bits not yet read, the lowest mAccBits bits of mAcc */
+    private long mAcc;
+    private int mAccBits;
+
+    /** read the bytes buf[pos, end) */
+    ByteReader6(ByteBuffer buf, int pos, int end) {
+        mBuf = buf;
+        mEnd = end;
+        mPos = pos;
+        mAcc = 0;
+        mAccBits = 0;
     }
 
     // ! whether k bits are available
-    boolean have_bits(int k) {
-        return (mPos + (mBit + k - 1) / 6) < mSize;
+    boolean have_bits(long k) {
+        return (long) (mEnd - mPos) * 6 + mAccBits >= k;
     }
 
-    // ! return the next integer encoded in graph6
-    int get_number() {
-        assert (mPos < mSize);
+    /** return the next six bits as a byte, bypassing the accumulator */
+    private int get_byte() {
+        if (mPos >= mEnd)
+            throw new IllegalArgumentException("Truncated graph6/sparse6 data.");
 
-        byte c = mBytes[mPos];
-        assert (c >= 63);
-        c -= 63;
-        ++mPos;
+        int c = mBuf.get(mPos++) - 63;
+        if (c < 0 || c > 63)
+            throw new IllegalArgumentException("Invalid graph6/sparse6 character.");
+        return c;
+    }
 
-        if (c < 126)
+    // ! return the next integer encoded in graph6: in one byte if < 63,
+    // ! otherwise 126 followed by 18 bits, or 126 126 followed by 36 bits.
+    int get_number() {
+        mAcc = 0;
+        mAccBits = 0;
+
+        int c = get_byte();
+        if (c < 63)
             return c;
 
-        assert (false);
-        return 0;
-    }
+        int bytes = 3;
+        if (mPos < mEnd && mBuf.get(mPos) == 126) {
+            ++mPos;
+            bytes = 6;
+        }
 
-    // ! return the next bit encoded in graph6
-    int get_bit() {
-        assert (mPos < mSize);
+        long v = 0;
+        for (int i = 0; i < bytes; ++i)
+            v = (v << 6) | get_byte();
 
-        byte c = mBytes[mPos];
-        assert (c >= 63);
-        c -= 63;
-        c >>= (5 - mBit);
+        if (v > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("graph6 number " + v + " is too large.");
 
-        mBit++;
-        if (mBit == 6) {
-            mPos++;
-            mBit = 0;
+        return (int) v;
+    }
+
+    /** decode six bit groups until at least k bits are in the accumulator */
+    private void fill(int k) {
+        while (mAccBits <= 58 && mPos < mEnd) {
+            mAcc = (mAcc << 6) | get_byte();
+            mAccBits += 6;
         }
 
-        return (c & 0x01);
+        // missing bits at the end are zero
+        if (mAccBits < k) {
+            mAcc <<= k - mAccBits;
+            mAccBits = k;
+        }
+    }
+
+    // ! return the next bit encoded in graph6
+    int get_bit() {
+        return get_bits(1);
     }
 
-    // ! return the next bits as an integer
+    // ! return the next k <= 32 bits as an integer
     int get_bits(int k) {
-        int v = 0;
+        assert (k <= 32);
 
-        for (int i = 0; i < k; ++i) {
-            v *= 2;
-            v += get_bit();
-        }
+        if (mAccBits < k)
+            fill(k);
 
-        return v;
+        mAccBits -= k;
+        return (int) ((mAcc >>> mAccBits) & ((1L << k) - 1));
     }
 }
 
-// ! Auxiliary class for writing graph6/sparse6 encoded strings
+/**
+ * Writer of graph6/sparse6 encoded strings. Bit fields are collected in a
+ * 64-bit accumulator and emitted as six bit groups directly into a byte array.
+ */
 class ByteWriter6
 {
-    ByteArrayOutputStream bo;
-
-    /** current bit index */
-    private int mBit;
+    /** encoded bytes */
+    private byte[] mBytes;
+    private int mSize;
 
-    /** current byte */
-    private byte mCurr;
+    /** bits not yet written, the lowest mAccBits bits of mAcc */
+    private long mAcc;
+    private int mAccBits;
 
     /** initialize empty string and zero bits */
     ByteWriter6() {
-        bo = new ByteArrayOutputStream();
-        mCurr = 0;
-        mBit = 0;
+        this(64);
+    }
+
+    /** initialize empty string with space for capacity bytes */
+    ByteWriter6(int capacity) {
+        mBytes = new byte[Math.max(capacity, 16)];
+        mSize = 0;
+        mAcc = 0;
+        mAccBits = 0;
+    }
+
+    /** append a byte */
+    private void write(int c) {
+        if (mSize == mBytes.length)
+            mBytes = Arrays.copyOf(mBytes, (int) Math.min(2L * mSize, Integer.MAX_VALUE - 8));
+        mBytes[mSize++] = (byte) c;
     }
 
-    /** append an integer to the graph6 string */
+    /** append a plain character, such as the sparse6 prefix */
+    public void put_char(char c) {
+        write(c);
+    }
+
+    /** return the length of an integer in graph6 encoding */
+    static int number_length(int i) {
+        return (i < 63) ? 1 : (i < 258048) ? 4 : 8;
+    }
+
+    /** append an integer to the graph6 string, in one, four or eight bytes */
     public void put_number(int i) {
+        assert (i >= 0);
+
+        mAcc = 0;
+        mAccBits = 0;
+
         if (i < 63) {
-            bo.write(63 + i);
-            mCurr = 0;
-            mBit = 0;
+            write(63 + i);
+        }
+        else if (i < 258048) {
+            write(126);
+            put_bits(i, 18);
         }
         else {
-            assert (false);
+            write(126);
+            write(126);
+            put_bits(i >>> 18, 18);
+            put_bits(i & 0x3FFFF, 18);
         }
     }
 
     /** append a bit to the graph6 string */
     public void put_bit(boolean b) {
-        if (mBit == 6) {
-            bo.write(63 + mCurr);
-            mCurr = 0;
-            mBit = 0;
-        }
-
-        if (b) {
-            mCurr |= 1 << (5 - mBit);
-        }
-
-        mBit++;
+        put_bits(b ? 1 : 0, 1);
     }
 
     public void put_bit(int b) {
-        put_bit(b != 0);
+        put_bits(b & 1, 1);
     }
 
-    // ! write bits as an integer
+    // ! write the lowest k <= 32 bits of v
     public void put_bits(int v, int k) {
+        assert (k <= 32);
+
+        mAcc = (mAcc << k) | (v & ((1L << k) - 1));
+        mAccBits += k;
 
-        for (int i = k; i > 0; --i) {
-            put_bit((v >> (i - 1)) & 1);
+        while (mAccBits >= 6) {
+            mAccBits -= 6;
+            write(63 + (int) ((mAcc >>> mAccBits) & 0x3F));
         }
     }
 
-    /** output remaining data */
+    /** output remaining bits, padded with zeros */
     public void flush() {
-        bo.write(63 + mCurr);
-        mCurr = 0;
-        mBit = 0;
+        if (mAccBits > 0)
+            put_bits(0, 6 - mAccBits);
     }
-};
+
+    /** return the encoded string */
+    public String toString() {
+        return new String(mBytes, 0, mSize, StandardCharsets.US_ASCII);
+    }
+}
 
 public class Graph6
 {
     public static MyGraph read_sparse6(String str) {
+        return read_graph6(":" + str);
+    }
+
+    /** Decode a graph6 or sparse6 string, the latter is prefixed by ':' */
+    public static MyGraph read_graph6(String str) {
+        byte[] bytes = str.getBytes(StandardCharsets.US_ASCII);
+        Graph6Reader r = new Graph6Reader(bytes, 0, bytes.length);
+
+        try {
+            if (!r.next())
+                throw new IllegalArgumentException("Empty graph6/sparse6 string.");
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
 
-        ByteReader6 br6 = new ByteReader6(str);
+        return r.toMyGraph();
+    }
 
-        int numVertex = br6.get_number();
-        int k = (int) Math.ceil(Math.log(numVertex) / Math.log(2));
+    /**
+     * Encode a graph with vertices 0..n-1 and edges (tail[i],head[i]) for i <
+     * m. The upper triangle of the adjacency matrix is built as a bit matrix
+     * in graph6 order, which is then written 32 bits at a time. Graphs with
+     * loops or parallel edges are written in sparse6 format.
+     */
+    public static String write_graph6(int n, int m, int[] tail, int[] head) {
 
-        MyGraph g = new MyGraph();
+        long numBits = (long) n * (n - 1) / 2;
+        if (ByteWriter6.number_length(n) + (numBits + 5) / 6 > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("Graph with " + n + " vertices is too large for graph6, use sparse6.");
 
-        for (int i = 0; i < numVertex; ++i)
-            g.addVertex(i);
+        ByteWriter6 bw = new ByteWriter6((int) (ByteWriter6.number_length(n) + (numBits + 5) / 6));
+        bw.put_number(n);
 
-        int v = 0, numEdge = 0;
+        // bit (i,j) with i < j is at position j*(j-1)/2 + i, from the top bit
+        int[] matrix = new int[(int) ((numBits + 31) / 32)];
 
-        while (br6.have_bits(1 + k)) {
-            int b = br6.get_bit();
-            int x = br6.get_bits(k);
+        for (int e = 0; e < m; ++e) {
+            int i = Math.min(tail[e], head[e]), j = Math.max(tail[e], head[e]);
 
-            if (x >= numVertex)
-                break;
+            long p = (long) j * (j - 1) / 2 + i;
+            int bit = 1 << (31 - (int) (p & 31));
 
-            if (b != 0)
-                v = v + 1;
-            if (v >= numVertex)
-                break;
+            // detected loop or parallel edges -> switch to sparse6 format
+            if (i == j || (matrix[(int) (p >>> 5)] & bit) != 0)
+                return write_sparse6(n, m, tail, head);
 
-            if (x > v)
-                v = x;
-            else {
-                // System.out.println("add edge " + x + " - " + v + "!");
-                g.addEdge(new MyEdge(numEdge++), x, v);
-            }
+            matrix[(int) (p >>> 5)] |= bit;
         }
 
-        return g;
+        for (int w = 0; w < matrix.length; ++w) {
+            int k = (int) Math.min(32, numBits - 32L * w);
+            bw.put_bits(matrix[w] >>> (32 - k), k);
+        }
+        bw.flush();
+
+        return bw.toString();
     }
 
-    public static MyGraph read_graph6(String str) {
-        if (str.charAt(0) == ':')
-            return read_sparse6(str.substring(1));
+    public static String write_graph6(MyGraph g) {
+        GraphCSR c = g.getCSR();
+        return write_graph6(c.n, c.m, c.tail, c.head);
+    }
+
+    /** Return the number of bits needed to encode 0..n-1 */
+    static int sparse6_bits(int n) {
+        return (n <= 1) ? 0 : 32 - Integer.numberOfLeadingZeros(n - 1);
+    }
+
+    /** Return the edges as (max << 32 | min) keys in sparse6 order */
+    private static long[] sparse6_order(int m, int[] tail, int[] head) {
+        long[] keys = new long[m];
+        for (int e = 0; e < m; ++e) {
+            long i = Math.min(tail[e], head[e]), j = Math.max(tail[e], head[e]);
+            keys[e] = (j << 32) | i;
+        }
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    /** Encode the sorted edge keys in sparse6 format */
+    private static String write_sparse6(int n, long[] keys) {
 
-        ByteReader6 br6 = new ByteReader6(str);
-        int n = br6.get_number();
+        int k = sparse6_bits(n);
 
-        MyGraph g = new MyGraph();
+        // each edge needs one or two fields of 1+k bits
+        ByteWriter6 bw = new ByteWriter6((int) Math.min(1 + ByteWriter6.number_length(n)
+                + (2L * keys.length * (1 + k) + 5) / 6, Integer.MAX_VALUE - 8));
+        bw.put_char(':');
+        bw.put_number(n);
+
+        int v = 0;
+        long numBits = 0;
 
-        int numEdge = 0;
+        for (long key : keys) {
+            int i = (int) key, j = (int) (key >>> 32);
 
-        for (int j = 1; j < n; ++j) {
-            for (int i = 0; i < j; ++i) {
-                int e = br6.get_bit();
-                if (e != 0) {
-                    g.addEdge(new MyEdge(numEdge++), i, j);
+            if (j == v) {
+                bw.put_bits(i, 1 + k);
+            }
+            else {
+                if (j == v + 1) {
+                    bw.put_bits((1 << k) | i, 1 + k);
+                }
+                else {
+                    // b=1 with x=j > v+1 sets v=j, then b=0 adds the edge
+                    bw.put_bits((1 << k) | j, 1 + k);
+                    bw.put_bits(i, 1 + k);
+                    numBits += 1 + k;
                 }
+                v = j;
             }
+            numBits += 1 + k;
+        }
+
+        // pad with 1-bits, except where these would decode to an edge
+        // (n-1,n-1): then the padding starts with a 0-bit.
+        int pad = (int) ((6 - numBits % 6) % 6);
+        if (k < 6 && n == (1 << k) && pad >= k + 1 && v == n - 2) {
+            bw.put_bits(0, 1);
+            --pad;
         }
-        return g;
+        bw.put_bits((1 << pad) - 1, pad);
+
+        return bw.toString();
     }
 
-    public static String write_graph6(MyGraph g) {
+    /**
+     * Encode a graph with vertices 0..n-1 and edges (tail[i],head[i]) for i <
+     * m in sparse6 format, which needs O(m log n) bits and supports loops and
+     * parallel edges.
+     */
+    public static String write_sparse6(int n, int m, int[] tail, int[] head) {
+        return write_sparse6(n, sparse6_order(m, tail, head));
+    }
 
-        ByteWriter6 bw = new ByteWriter6();
-        int n = g.getVertexCount();
-        bw.put_number(n);
+    public static String write_sparse6(MyGraph g) {
+        GraphCSR c = g.getCSR();
+        return write_sparse6(c.n, c.m, c.tail, c.head);
+    }
 
-        // create vertex mapping to ignore deleted vertices
-        int m = g.getMaxVertexId();
-        int[] vmap = new int[m + 1];
+    /**
+     * Encode a graph in graph6 or sparse6 format, whichever is shorter. Graphs
+     * with loops or parallel edges are always written in sparse6 format.
+     */
+    public static String write_compact(int n, int m, int[] tail, int[] head) {
 
-        {
-            int i = 0;
-            for (Integer v : g.getVertices())
-                vmap[i++] = v;
+        long[] keys = sparse6_order(m, tail, head);
+        String s6 = write_sparse6(n, keys);
+
+        for (int e = 0; e < keys.length; ++e) {
+            if ((int) keys[e] == (int) (keys[e] >>> 32) || (e > 0 && keys[e] == keys[e - 1]))
+                return s6;
         }
 
-        for (int j = 1; j < n; ++j) {
-            for (int i = 0; i < j; ++i) {
-                // detected parallel edges -> switch to sparse6 format
-                // if (count > 1) return write_sparse6(g);
+        long g6bytes = ByteWriter6.number_length(n) + ((long) n * (n - 1) / 2 + 5) / 6;
+        if (g6bytes <= s6.length())
+            return write_graph6(n, m, tail, head);
 
-                bw.put_bit(g.findEdge(vmap[i], vmap[j]) != null);
-            }
-        }
-        bw.flush();
+        return s6;
+    }
 
-        return bw.bo.toString();
+    public static String write_compact(MyGraph g) {
+        GraphCSR c = g.getCSR();
+        return write_compact(c.n, c.m, c.tail, c.head);
     }
 }
@@ -0,0 +1,229 @@
+/*******************************************************************************
+ * src/net/panthema/BispanningGame/Graph6Reader.java
+ *
+ * Reader of buffers with one graph6 or sparse6 graph per line, as written by
+ * nauty's geng and genbg, which decodes each line directly into a primitive
+ * edge list.
+ *
+ *******************************************************************************
+ * Copyright (C) 2014 Timo Bingmann <tb@panthema.net>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package net.panthema.BispanningGame;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The input is a ByteBuffer region, such as a memory mapped chunk of a file.
+ * Lines are decoded in place from the buffer's bytes by ByteReader6, without
+ * creating Strings or MyGraph objects. After next() returned true, the current
+ * graph has vertices 0..n-1 and the edges (tail[i],head[i]) for i < m. These
+ * arrays are reused for the next line.
+ *
+ * graph6 lines are decoded in words of up to 32 adjacency bits. Headers
+ * ">>graph6<<" and ">>sparse6<<" are skipped.
+ *
+ * @author Timo Bingmann
+ */
+class Graph6Reader
+{
+    /** Input buffer, indexes are relative to its start */
+    private ByteBuffer mBuf;
+
+    /** Start of the next line in the buffer */
+    private int mPos;
+
+    /** Current line's range in the buffer */
+    private int mLineStart, mLineEnd;
+
+    /** Number of lines read */
+    private long mLineNumber;
+
+    /** Scratch array to copy lines out of a direct buffer */
+    private byte[] mLine;
+
+    /** Number of vertices and edges of the current graph */
+    int n, m;
+
+    /** Endpoints of the current graph's edges, of length at least m */
+    int[] tail = new int[64], head = new int[64];
+
+    /** Read the lines in buf[position, limit), e.g. a mapped file region */
+    Graph6Reader(ByteBuffer buf) {
+        mBuf = buf.slice();
+    }
+
+    /** Read the lines in the array region buf[off, off+len) */
+    Graph6Reader(byte[] buf, int off, int len) {
+        this(ByteBuffer.wrap(buf, off, len));
+    }
+
+    /**
+     * Read and decode the next graph, skip empty lines. Returns false at the
+     * end of the input.
+     */
+    boolean next() throws IOException {
+        int limit = mBuf.limit();
+
+        while (mPos < limit) {
+            int eol = mPos;
+            while (eol < limit && mBuf.get(eol) != '\n')
+                ++eol;
+
+            mLineStart = mPos;
+            mLineEnd = eol;
+            mPos = Math.min(eol + 1, limit);
+            ++mLineNumber;
+
+            if (mLineEnd > mLineStart && mBuf.get(mLineEnd - 1) == '\r')
+                --mLineEnd;
+
+            int cur = mLineStart;
+
+            // skip header, which may precede the first graph on its line
+            if (mLineEnd - cur >= 2 && mBuf.get(cur) == '>' && mBuf.get(cur + 1) == '>') {
+                int h = cur + 2;
+                while (h + 1 < mLineEnd && !(mBuf.get(h) == '<' && mBuf.get(h + 1) == '<'))
+                    ++h;
+                cur = Math.min(h + 2, mLineEnd);
+            }
+
+            if (cur == mLineEnd)
+                continue;
+
+            try {
+                if (mBuf.get(cur) == ':')
+                    decodeSparse6(new ByteReader6(mBuf, cur + 1, mLineEnd));
+                else
+                    decodeGraph6(new ByteReader6(mBuf, cur, mLineEnd));
+            }
+            catch (IllegalArgumentException e) {
+                throw new IOException(e.getMessage() + " in line " + mLineNumber);
+            }
+            return true;
+        }
+
+        return false;
+    }
+
+    /** Return the number of lines read */
+    long getLineNumber() {
+        return mLineNumber;
+    }
+
+    /** Append an edge to the current graph */
+    private void addEdge(int x, int y) {
+        if (m == tail.length) {
+            tail = Arrays.copyOf(tail, 2 * m);
+            head = Arrays.copyOf(head, 2 * m);
+        }
+        tail[m] = x;
+        head[m] = y;
+        ++m;
+    }
+
+    /** Decode the upper triangle of the adjacency matrix, column by column */
+    private void decodeGraph6(ByteReader6 br6) {
+        n = br6.get_number();
+        m = 0;
+
+        if (!br6.have_bits((long) n * (n - 1) / 2))
+            throw new IllegalArgumentException("Truncated graph6 data.");
+
+        for (int j = 1; j < n; ++j) {
+            // read the bits (i,j) of column j in words of up to 32 bits
+            for (int i0 = 0; i0 < j; i0 += 32) {
+                int k = Math.min(32, j - i0);
+                int w = br6.get_bits(k);
+
+                // the highest bit belongs to the smallest i
+                while (w != 0) {
+                    int b = 31 - Integer.numberOfLeadingZeros(w);
+                    w &= ~(1 << b);
+                    addEdge(i0 + k - 1 - b, j);
+                }
+            }
+        }
+    }
+
+    /** Decode the edge list of a sparse6 line */
+    private void decodeSparse6(ByteReader6 br6) {
+        n = br6.get_number();
+        m = 0;
+
+        int k = Graph6.sparse6_bits(n);
+        int v = 0;
+
+        while (br6.have_bits(1 + k)) {
+            // read the flag bit b and the k-bit vertex x at once
+            int bx = br6.get_bits(1 + k);
+            int b = bx >>> k;
+            int x = bx & ((1 << k) - 1);
+
+            if (x >= n)
+                break;
+
+            if (b != 0)
+                v = v + 1;
+            if (v >= n)
+                break;
+
+            if (x > v)
+                v = x;
+            else
+                addEdge(x, v);
+        }
+    }
+
+    /** Return a snapshot of the current graph */
+    GraphCSR toCSR() {
+        return new GraphCSR(n, m, tail, head);
+    }
+
+    /** Construct a MyGraph of the current graph */
+    MyGraph toMyGraph() {
+        MyGraph g = new MyGraph();
+
+        for (int v = 0; v < n; ++v)
+            g.addVertex(v);
+        for (int i = 0; i < m; ++i)
+            g.addEdge(new MyEdge(i), tail[i], head[i]);
+
+        return g;
+    }
+
+    /** Write the current line unchanged, followed by a newline */
+    void writeLine(OutputStream out) throws IOException {
+        int len = mLineEnd - mLineStart;
+
+        if (mBuf.hasArray()) {
+            out.write(mBuf.array(), mBuf.arrayOffset() + mLineStart, len);
+        }
+        else {
+            if (mLine == null || mLine.length < len)
+                mLine = new byte[Math.max(len, 256)];
+
+            ByteBuffer b = mBuf.duplicate();
+            b.position(mLineStart);
+            b.get(mLine, 0, len);
+            out.write(mLine, 0, len);
+        }
+        out.write('\n');
+    }
+}
@@ -0,0 +1,300 @@
+/*******************************************************************************
+ * src/net/panthema/BispanningGame/GraphBinary.java
+ *
+ * Compact binary snapshot of a colored graph with vertex positions, used to
+ * save and restore game positions, read through a memory mapped file.
+ *
+ *******************************************************************************
+ * Copyright (C) 2014 Timo Bingmann <tb@panthema.net>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package net.panthema.BispanningGame;
+
+import java.awt.geom.Point2D;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.commons.collections15.Transformer;
+
+import edu.uci.ics.jung.algorithms.layout.StaticLayout;
+
+/**
+ * The file is little-endian: a header of six ints (magic, version, flags, n,
+ * m, turn number) followed by flat columns. These are the vertex ids int[n],
+ * if FLAG_COORDS is set the coordinates float[n] x and float[n] y, then the
+ * edge ids int[m], the endpoints int[m] tail and int[m] head as indexes into
+ * the vertex columns, and the colors byte[m] color and byte[m] origColor.
+ *
+ * The columns are accessed directly in the mapped file, hence reading a single
+ * element allocates nothing, and whole columns are copied in bulk.
+ *
+ * @author Timo Bingmann
+ */
+class GraphBinary
+{
+    private static final int MAGIC = 0x47505342; // "BSPG"
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER = 24;
+
+    /** Flag if vertex coordinates are stored */
+    static final int FLAG_COORDS = 1;
+
+    /** Number of vertices and edges */
+    final int n, m;
+
+    /** Flags of the file */
+    final int flags;
+
+    /** Number of turns played in the saved game */
+    final int turnNum;
+
+    /** Columns in the mapped file */
+    private final IntBuffer mVertexId, mEdgeId, mTail, mHead;
+    private final FloatBuffer mX, mY;
+    private final ByteBuffer mColor, mOrigColor;
+
+    /** Open a snapshot file */
+    GraphBinary(File file) throws IOException {
+        this(map(file), file.toString());
+    }
+
+    /** Map a whole file read-only */
+    private static MappedByteBuffer map(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            return raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        }
+        finally {
+            raf.close();
+        }
+    }
+
+    /** Read a snapshot from a buffer, the name is used in error messages */
+    GraphBinary(ByteBuffer buf, String name) throws IOException {
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (buf.capacity() < HEADER || buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION)
+            throw new IOException("Not a graph snapshot: " + name);
+
+        flags = buf.getInt(8);
+        n = buf.getInt(12);
+        m = buf.getInt(16);
+        turnNum = buf.getInt(20);
+
+        if (n < 0 || m < 0 || size(n, m, flags) > buf.capacity())
+            throw new IOException("Truncated graph snapshot: " + name);
+
+        int pos = HEADER;
+        mVertexId = column(buf, pos, 4 * n).asIntBuffer();
+        pos += 4 * n;
+
+        if ((flags & FLAG_COORDS) != 0) {
+            mX = column(buf, pos, 4 * n).asFloatBuffer();
+            pos += 4 * n;
+            mY = column(buf, pos, 4 * n).asFloatBuffer();
+            pos += 4 * n;
+        }
+        else {
+            mX = mY = null;
+        }
+
+        mEdgeId = column(buf, pos, 4 * m).asIntBuffer();
+        pos += 4 * m;
+        mTail = column(buf, pos, 4 * m).asIntBuffer();
+        pos += 4 * m;
+        mHead = column(buf, pos, 4 * m).asIntBuffer();
+        pos += 4 * m;
+        mColor = column(buf, pos, m);
+        pos += m;
+        mOrigColor = column(buf, pos, m);
+    }
+
+    /** Return the file size of a snapshot */
+    private static long size(int n, int m, int flags) {
+        int vcols = ((flags & FLAG_COORDS) != 0) ? 3 : 1;
+        return HEADER + 4L * vcols * n + 14L * m;
+    }
+
+    /** Return a little-endian view of buf[pos, pos+len) */
+    private static ByteBuffer column(ByteBuffer buf, int pos, int len) {
+        ByteBuffer b = buf.duplicate();
+        b.position(pos);
+        b.limit(pos + len);
+        return b.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    boolean hasCoordinates() {
+        return mX != null;
+    }
+
+    int getVertexId(int i) {
+        return mVertexId.get(i);
+    }
+
+    float getX(int i) {
+        return mX.get(i);
+    }
+
+    float getY(int i) {
+        return mY.get(i);
+    }
+
+    int getEdgeId(int j) {
+        return mEdgeId.get(j);
+    }
+
+    /** Return the vertex index of the edge's tail */
+    int getTail(int j) {
+        return mTail.get(j);
+    }
+
+    /** Return the vertex index of the edge's head */
+    int getHead(int j) {
+        return mHead.get(j);
+    }
+
+    int getColor(int j) {
+        return mColor.get(j);
+    }
+
+    int getOrigColor(int j) {
+        return mOrigColor.get(j);
+    }
+
+    /** Copy an int column in bulk */
+    private static int[] toArray(IntBuffer col) {
+        int[] a = new int[col.capacity()];
+        col.duplicate().get(a);
+        return a;
+    }
+
+    /** Return an uncolored snapshot of the graph structure */
+    GraphCSR toCSR() {
+        return new GraphCSR(n, m, toArray(mTail), toArray(mHead));
+    }
+
+    /**
+     * Construct the MyGraph with its edge colors and original colors, and an
+     * initial layout if coordinates are stored.
+     */
+    MyGraph toMyGraph() throws IOException {
+        int[] vertexId = toArray(mVertexId);
+        int[] edgeId = toArray(mEdgeId);
+        int[] tail = toArray(mTail), head = toArray(mHead);
+
+        MyGraph g = new MyGraph();
+
+        for (int i = 0; i < n; ++i)
+            g.addVertex(vertexId[i]);
+
+        if (mX != null) {
+            g.mInitialLayout = new StaticLayout<Integer, MyEdge>(g);
+            for (int i = 0; i < n; ++i)
+                g.mInitialLayout.setLocation(vertexId[i], mX.get(i), mY.get(i));
+        }
+
+        for (int j = 0; j < m; ++j) {
+            if (tail[j] < 0 || tail[j] >= n || head[j] < 0 || head[j] >= n)
+                throw new IOException("Invalid edge in graph snapshot");
+
+            MyEdge e = new MyEdge(edgeId[j]);
+            e.color = mColor.get(j);
+            e.origColor = mOrigColor.get(j);
+            g.addEdge(e, vertexId[tail[j]], vertexId[head[j]]);
+        }
+
+        return g;
+    }
+
+    /**
+     * Write a snapshot of g, its colors and original colors, to a file. The
+     * coordinates are taken from layout unless it is null.
+     */
+    static void write(File file, MyGraph g, Transformer<Integer, Point2D> layout, int turnNum) throws IOException {
+        GraphCSR c = g.getCSR();
+        int n = c.n, m = c.m;
+        int flags = (layout != null) ? FLAG_COORDS : 0;
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            long size = size(n, m, flags);
+            if (size > Integer.MAX_VALUE)
+                throw new IOException("Graph is too large for a snapshot");
+
+            raf.setLength(0);
+            raf.setLength(size);
+
+            MappedByteBuffer buf = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+
+            buf.putInt(MAGIC);
+            buf.putInt(VERSION);
+            buf.putInt(flags);
+            buf.putInt(n);
+            buf.putInt(m);
+            buf.putInt(turnNum);
+
+            int pos = HEADER;
+            column(buf, pos, 4 * n).asIntBuffer().put(c.vertexId);
+            pos += 4 * n;
+
+            if (layout != null) {
+                float[] x = new float[n], y = new float[n];
+                for (int i = 0; i < n; ++i) {
+                    Point2D p = layout.transform(c.vertexId[i]);
+                    x[i] = (float) p.getX();
+                    y[i] = (float) p.getY();
+                }
+                column(buf, pos, 4 * n).asFloatBuffer().put(x);
+                pos += 4 * n;
+                column(buf, pos, 4 * n).asFloatBuffer().put(y);
+                pos += 4 * n;
+            }
+
+            int[] edgeId = new int[m];
+            byte[] color = new byte[m], origColor = new byte[m];
+            for (int j = 0; j < m; ++j) {
+                edgeId[j] = c.edge[j].id;
+                color[j] = (byte) c.edge[j].color;
+                origColor[j] = (byte) c.edge[j].origColor;
+            }
+
+            column(buf, pos, 4 * m).asIntBuffer().put(edgeId);
+            pos += 4 * m;
+            column(buf, pos, 4 * m).asIntBuffer().put(c.tail);
+            pos += 4 * m;
+            column(buf, pos, 4 * m).asIntBuffer().put(c.head);
+            pos += 4 * m;
+            column(buf, pos, m).put(color);
+            pos += m;
+            column(buf, pos, m).put(origColor);
+
+            buf.force();
+        }
+        finally {
+            raf.close();
+        }
+    }
+}
@@ -0,0 +1,501 @@
+/*******************************************************************************
+ * src/net/panthema/BispanningGame/GraphCSR.java
+ *
+ * Compact snapshot of a MyGraph in compressed sparse row format, on which the
+ * cycle, cut and tree packing algorithms run without boxing or hashing.
+ *
+ *******************************************************************************
+ * Copyright (C) 2014 Timo Bingmann <tb@panthema.net>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package net.panthema.BispanningGame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import edu.uci.ics.jung.graph.util.Pair;
+
+/**
+ * Immutable structure snapshot of a graph: vertices are numbered 0..n-1 and
+ * edges 0..m-1, endpoints and incidence lists are stored in flat int arrays.
+ * Only the color array is mutable, it is loaded from and stored back into the
+ * MyEdge objects.
+ *
+ * @author Timo Bingmann
+ */
+class GraphCSR
+{
+    /** Number of vertices and edges */
+    final int n, m;
+
+    /** Vertex id in the original graph of each vertex index */
+    final int[] vertexId;
+
+    /** Vertex index of each vertex id, -1 if the id is not in the graph */
+    final int[] vertexIndex;
+
+    /** Edge object of each edge index, null for primitive graphs */
+    final MyEdge[] edge;
+
+    /** Edge index of each edge id, -1 if the id is not in the snapshot */
+    final int[] edgeIndex;
+
+    /** Endpoints of each edge as vertex indexes */
+    final int[] tail, head;
+
+    /** Color of each edge: 0=black, 1=red, 2=blue */
+    final int[] color;
+
+    /** Incident edges of v are at adjEdge[offset[v]] .. adjEdge[offset[v+1]-1] */
+    final int[] offset;
+
+    /** Incident edge and opposite vertex of each adjacency entry */
+    final int[] adjEdge, adjVertex;
+
+    /** BFS queue, predecessor edges and visit marks, reused by all searches */
+    private int[] mQueue, mPred, mMark;
+
+    /** Current visit mark value, increased instead of clearing mMark */
+    private int mEpoch;
+
+    /** Construct snapshot of the graph in one pass over edges */
+    GraphCSR(MyGraph g) {
+        n = g.getVertexCount();
+        m = g.getEdgeCount();
+
+        // make a mapping V -> {0,...,n-1}
+        vertexId = new int[n];
+        vertexIndex = new int[g.getMaxVertexId() + 1];
+        Arrays.fill(vertexIndex, -1);
+
+        int k = 0;
+        for (Integer v : g.getVertices()) {
+            vertexId[k] = v;
+            vertexIndex[v] = k++;
+        }
+
+        edge = new MyEdge[m];
+        tail = new int[m];
+        head = new int[m];
+        color = new int[m];
+
+        int i = 0, maxId = 0;
+        for (MyEdge e : g.getEdges()) {
+            Pair<Integer> p = g.getEndpoints(e);
+
+            edge[i] = e;
+            maxId = Math.max(maxId, e.id);
+            tail[i] = vertexIndex[p.getFirst()];
+            head[i] = vertexIndex[p.getSecond()];
+            color[i] = e.color;
+            ++i;
+        }
+
+        // make a mapping edge id -> {0,...,m-1}
+        edgeIndex = new int[maxId + 1];
+        Arrays.fill(edgeIndex, -1);
+        for (i = 0; i < m; ++i)
+            edgeIndex[edge[i].id] = i;
+
+        offset = new int[n + 1];
+        adjEdge = new int[2 * m];
+        adjVertex = new int[2 * m];
+        fillIncidence();
+
+        allocScratch();
+    }
+
+    /**
+     * Construct an uncolored snapshot of a primitive graph with vertices
+     * 0..n-1 and edges (tail[i],head[i]) for i < m, e.g. decoded by
+     * Graph6Reader. It has no MyEdge objects, hence edge is null and colors
+     * cannot be loaded or stored.
+     */
+    GraphCSR(int n, int m, int[] tail, int[] head) {
+        this.n = n;
+        this.m = m;
+
+        vertexId = new int[n];
+        vertexIndex = new int[n];
+        for (int v = 0; v < n; ++v)
+            vertexId[v] = vertexIndex[v] = v;
+
+        edge = null;
+        edgeIndex = null;
+        this.tail = Arrays.copyOf(tail, m);
+        this.head = Arrays.copyOf(head, m);
+        color = new int[m];
+
+        offset = new int[n + 1];
+        adjEdge = new int[2 * m];
+        adjVertex = new int[2 * m];
+        fillIncidence();
+
+        allocScratch();
+    }
+
+    /** Counting sort of edge endpoints into incidence lists */
+    private void fillIncidence() {
+        for (int i = 0; i < m; ++i) {
+            offset[tail[i] + 1]++;
+            offset[head[i] + 1]++;
+        }
+        for (int v = 0; v < n; ++v)
+            offset[v + 1] += offset[v];
+
+        int[] fill = Arrays.copyOf(offset, n);
+
+        for (int i = 0; i < m; ++i) {
+            int p = fill[tail[i]]++;
+            adjEdge[p] = i;
+            adjVertex[p] = head[i];
+
+            p = fill[head[i]]++;
+            adjEdge[p] = i;
+            adjVertex[p] = tail[i];
+        }
+    }
+
+    /**
+     * Construct a copy of the snapshot sharing the immutable structure arrays,
+     * with its own color array and scratch buffers, e.g. for another thread.
+     */
+    GraphCSR(GraphCSR g) {
+        n = g.n;
+        m = g.m;
+        vertexId = g.vertexId;
+        vertexIndex = g.vertexIndex;
+        edge = g.edge;
+        edgeIndex = g.edgeIndex;
+        tail = g.tail;
+        head = g.head;
+        color = g.color.clone();
+        offset = g.offset;
+        adjEdge = g.adjEdge;
+        adjVertex = g.adjVertex;
+
+        allocScratch();
+    }
+
+    private void allocScratch() {
+        mQueue = new int[n];
+        mPred = new int[n];
+        mMark = new int[n];
+        mEpoch = 0;
+    }
+
+    /** Reload edge colors from the MyEdge objects */
+    void loadColors() {
+        for (int i = 0; i < m; ++i)
+            color[i] = edge[i].color;
+    }
+
+    /** Write edge colors back into the MyEdge objects */
+    void storeColors() {
+        for (int i = 0; i < m; ++i) {
+            int old = edge[i].color;
+            if (old == color[i])
+                continue;
+
+            edge[i].color = color[i];
+            if (edge[i].graph != null)
+                edge[i].graph.edgeRecolored(edge[i], old, edge[i].origColor);
+        }
+    }
+
+    /** Return the edge index of e in this snapshot */
+    int indexOf(MyEdge e) {
+        if (e.id >= 0 && e.id < edgeIndex.length) {
+            int i = edgeIndex[e.id];
+            if (i >= 0 && edge[i] == e)
+                return i;
+        }
+        throw new IllegalArgumentException("Edge " + e + " is not in graph snapshot.");
+    }
+
+    /** Return the endpoint of edge e which is not v */
+    int opposite(int e, int v) {
+        return tail[e] == v ? head[e] : tail[e];
+    }
+
+    /** Convert an array of edge indexes to a list of edge objects */
+    List<MyEdge> toEdgeList(int[] ei) {
+        List<MyEdge> list = new ArrayList<MyEdge>(ei.length);
+        for (int i : ei)
+            list.add(edge[i]);
+        return list;
+    }
+
+    /** Convert an array of edge indexes to a set of edge objects */
+    Set<MyEdge> toEdgeSet(int[] ei) {
+        Set<MyEdge> set = new HashSet<MyEdge>(ei.length * 2);
+        for (int i : ei)
+            set.add(edge[i]);
+        return set;
+    }
+
+    /** Return a fresh mark value, step values are reserved for the caller. */
+    private int nextEpoch(int step) {
+        if (mEpoch > Integer.MAX_VALUE - step - 1) {
+            Arrays.fill(mMark, 0);
+            mEpoch = 0;
+        }
+        mEpoch += step;
+        return mEpoch;
+    }
+
+    /**
+     * Calculate an edge path from one end of e0 to the other. If sameColor =
+     * false, then a path (cycle minus e0) of the other color is calculated. If
+     * sameColor = true, then a true cycle of the color of e0 is calculated.
+     */
+    int[] calcCycle(int e0, boolean sameColor) {
+        int e0_x = tail[e0], e0_y = head[e0];
+        int c0 = color[e0];
+
+        int seen = nextEpoch(1);
+        int qhead = 0, qtail = 0;
+
+        // initialize queue with node e0_x
+        mQueue[qtail++] = e0_x;
+        mMark[e0_x] = seen;
+
+        // Breadth first search
+        while (qhead != qtail) {
+            int v = mQueue[qhead++];
+
+            for (int p = offset[v]; p < offset[v + 1]; ++p) {
+                int ei = adjEdge[p];
+
+                // skip edges with same color?
+                if (!sameColor && color[ei] == c0)
+                    continue;
+                // skip edges with other color? or == e0
+                if (sameColor && (color[ei] != c0 || ei == e0))
+                    continue;
+
+                int w = adjVertex[p];
+
+                if (mMark[w] == seen) // vertex already seen
+                    continue;
+
+                mQueue[qtail++] = w;
+                mMark[w] = seen;
+                mPred[w] = ei;
+            }
+        }
+
+        if (mMark[e0_y] != seen) // BFS did not reach other end of e0
+            return null;
+
+        // follow predecessor links back to other end
+        int len = 0;
+        for (int v = e0_y; v != e0_x; v = opposite(mPred[v], v))
+            ++len;
+
+        int[] path = new int[sameColor ? len + 1 : len];
+
+        len = 0;
+        for (int v = e0_y; v != e0_x; v = opposite(mPred[v], v))
+            path[len++] = mPred[v];
+
+        if (sameColor)
+            path[len] = e0;
+
+        return path;
+    }
+
+    /** Calculate the edge cut of e0 which has the other color. */
+    int[] calcCut(int e0, boolean sameColor) {
+        int e0_x = tail[e0], e0_y = head[e0];
+        int c0 = color[e0];
+
+        // vertex marks: side1 = e0_x's side, side2 = e0_y's side
+        int side1 = nextEpoch(2), side2 = side1 - 1;
+        int qhead = 0, qtail = 0;
+
+        // First breadth search on e0_x's side
+        mQueue[qtail++] = e0_x;
+        mMark[e0_x] = side1;
+
+        while (qhead != qtail) {
+            int v = mQueue[qhead++];
+
+            for (int p = offset[v]; p < offset[v + 1]; ++p) {
+                int ei = adjEdge[p];
+
+                // skip edges with e0's color?
+                if (sameColor && color[ei] == c0)
+                    continue;
+                // skip edges with other color? or == e0
+                if (!sameColor && (color[ei] != c0 || ei == e0))
+                    continue;
+
+                int w = adjVertex[p];
+
+                if (mMark[w] == side1) // vertex already seen
+                    continue;
+
+                mQueue[qtail++] = w;
+                mMark[w] = side1;
+            }
+        }
+
+        // if other end was marked: there is a path from e0_x to e0_y -> no cut.
+        if (mMark[e0_y] == side1)
+            return null;
+
+        // Second breadth search on e0_y's side
+        qhead = qtail = 0;
+        mQueue[qtail++] = e0_y;
+        mMark[e0_y] = side2;
+
+        int[] cut = new int[m];
+        int cutsize = 0;
+
+        while (qhead != qtail) {
+            int v = mQueue[qhead++];
+
+            for (int p = offset[v]; p < offset[v + 1]; ++p) {
+                int ei = adjEdge[p];
+                int w = adjVertex[p];
+
+                // skip edges with e0's color or other color?
+                if (sameColor == (color[ei] == c0)) {
+                    // check if cut edge
+                    if (mMark[w] == side1)
+                        cut[cutsize++] = ei;
+                }
+                else { // other color
+                    if (mMark[w] != side1 && mMark[w] != side2) {
+                        // vertex not seen
+                        mQueue[qtail++] = w;
+                        mMark[w] = side2;
+                    }
+                }
+            }
+        }
+
+        return Arrays.copyOf(cut, cutsize);
+    }
+
+    /** Test if e0 is contained in a cycle of the same color in the graph */
+    boolean testCycle(int e0) {
+        int e0_x = tail[e0], e0_y = head[e0];
+        int c0 = color[e0];
+
+        int seen = nextEpoch(1);
+        int qhead = 0, qtail = 0;
+
+        mQueue[qtail++] = e0_x;
+        mMark[e0_x] = seen;
+
+        // Breadth first search
+        while (qhead != qtail) {
+            int v = mQueue[qhead++];
+
+            for (int p = offset[v]; p < offset[v + 1]; ++p) {
+                int ei = adjEdge[p];
+
+                if (color[ei] != c0) // skip other colors
+                    continue;
+                if (ei == e0) // skip the seed edge
+                    continue;
+
+                int w = adjVertex[p];
+
+                if (mMark[w] == seen) // vertex already seen
+                    continue;
+
+                if (w == e0_y)
+                    return true;
+
+                mQueue[qtail++] = w;
+                mMark[w] = seen;
+            }
+        }
+
+        return false;
+    }
+
+    /** Count the number of components in the graph */
+    int countComponents() {
+        int seen = nextEpoch(1);
+        int numComponents = 0;
+
+        // iterate over all vertices as roots
+        for (int r = 0; r < n; ++r) {
+
+            if (mMark[r] == seen)
+                continue;
+
+            ++numComponents; // new root, new component
+
+            int qhead = 0, qtail = 0;
+            mQueue[qtail++] = r;
+            mMark[r] = seen;
+
+            while (qhead != qtail) {
+                int v = mQueue[qhead++];
+
+                // visit all neighbors of v
+                for (int p = offset[v]; p < offset[v + 1]; ++p) {
+                    int w = adjVertex[p];
+
+                    if (mMark[w] == seen) // already seen
+                        continue;
+
+                    mQueue[qtail++] = w;
+                    mMark[w] = seen;
+                }
+            }
+        }
+
+        return numComponents;
+    }
+
+    /** Count the number of components, optionally using parallel unions */
+    int countComponents(boolean parallel) {
+        if (!parallel)
+            return countComponents();
+
+        final ConcurrentUnionFind uf = new ConcurrentUnionFind(n);
+
+        class UnionAction extends ConcurrentUnionFind.RangeAction
+        {
+            private static final long serialVersionUID = -3302465390372561045L;
+
+            UnionAction(int begin, int end) {
+                super(begin, end);
+            }
+
+            ConcurrentUnionFind.RangeAction create(int begin, int end) {
+                return new UnionAction(begin, end);
+            }
+
+            void body(int begin, int end) {
+                for (int e = begin; e < end; ++e)
+                    uf.union(tail[e], head[e]);
+            }
+        }
+
+        new UnionAction(0, m).run();
+        return uf.count();
+    }
+}
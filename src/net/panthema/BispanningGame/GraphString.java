@@ -39,6 +39,11 @@ import edu.uci.ics.jung.algorithms.layout.StaticLayout;
 
 class GraphString
 {
+    /** Write graph without vertex positions, e.g. for headless use */
+    public static String write_graph(MyGraph g) {
+        return write_graph(g, null);
+    }
+
     public static String write_graph(MyGraph g, Transformer<Integer, Point2D> gl) {
         ByteArrayOutputStream ba = new ByteArrayOutputStream();
         PrintWriter pw = new PrintWriter(ba);
@@ -61,11 +66,13 @@ class GraphString
             pw.print('i');
             pw.print(v);
 
-            Point2D pos = gl.transform(v);
-            pw.print('x');
-            pw.print((int) pos.getX());
-            pw.print('y');
-            pw.print((int) pos.getY());
+            if (gl != null) {
+                Point2D pos = gl.transform(v);
+                pw.print('x');
+                pw.print((int) pos.getX());
+                pw.print('y');
+                pw.print((int) pos.getY());
+            }
 
             pw.print('/');
         }
@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * src/net/panthema/BispanningGame/LinkCutForest.java
+ *
+ * Link-cut trees of Sleator and Tarjan on integer nodes, used to maintain the
+ * spanning forests of the two colors while edges are flipped.
+ *
+ *******************************************************************************
+ * Copyright (C) 2014 Timo Bingmann <tb@panthema.net>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package net.panthema.BispanningGame;
+
+/**
+ * Forest of unrooted trees on the nodes 0..size-1 supporting link, cut,
+ * connectivity and path queries in amortized O(log n) time. The preferred
+ * paths are kept in splay trees stored in flat arrays, evert is implemented
+ * with a lazy reversal bit.
+ *
+ * @author Timo Bingmann
+ */
+class LinkCutForest
+{
+    /** Number of nodes */
+    final int size;
+
+    /** Splay tree children and parent (or path-parent) of each node, -1 = none */
+    private int[] mLeft, mRight, mParent;
+
+    /** Lazy reversal flag of each splay subtree */
+    private boolean[] mFlip;
+
+    /** Scratch stack for pushing flags and traversing splay trees */
+    private int[] mStack;
+
+    /** Construct forest of isolated nodes */
+    LinkCutForest(int size) {
+        this.size = size;
+
+        mLeft = new int[size];
+        mRight = new int[size];
+        mParent = new int[size];
+        mFlip = new boolean[size];
+        mStack = new int[size];
+
+        for (int i = 0; i < size; ++i)
+            mLeft[i] = mRight[i] = mParent[i] = -1;
+    }
+
+    /** Test if x is the root of its splay tree */
+    private boolean isSplayRoot(int x) {
+        int p = mParent[x];
+        return p < 0 || (mLeft[p] != x && mRight[p] != x);
+    }
+
+    /** Push reversal flag of x down to its children */
+    private void push(int x) {
+        if (!mFlip[x]) return;
+
+        int t = mLeft[x];
+        mLeft[x] = mRight[x];
+        mRight[x] = t;
+
+        if (mLeft[x] >= 0) mFlip[mLeft[x]] ^= true;
+        if (mRight[x] >= 0) mFlip[mRight[x]] ^= true;
+        mFlip[x] = false;
+    }
+
+    /** Rotate x above its parent */
+    private void rotate(int x) {
+        int p = mParent[x], g = mParent[p];
+
+        if (!isSplayRoot(p)) {
+            if (mLeft[g] == p)
+                mLeft[g] = x;
+            else
+                mRight[g] = x;
+        }
+        mParent[x] = g;
+
+        if (mLeft[p] == x) {
+            mLeft[p] = mRight[x];
+            if (mLeft[p] >= 0) mParent[mLeft[p]] = p;
+            mRight[x] = p;
+        }
+        else {
+            mRight[p] = mLeft[x];
+            if (mRight[p] >= 0) mParent[mRight[p]] = p;
+            mLeft[x] = p;
+        }
+        mParent[p] = x;
+    }
+
+    /** Splay x to the root of its splay tree */
+    private void splay(int x) {
+        // push reversal flags from the splay root down to x
+        int sp = 0;
+        mStack[sp++] = x;
+        for (int y = x; !isSplayRoot(y); y = mParent[y])
+            mStack[sp++] = mParent[y];
+        while (sp != 0)
+            push(mStack[--sp]);
+
+        while (!isSplayRoot(x)) {
+            int p = mParent[x];
+            if (!isSplayRoot(p)) {
+                int g = mParent[p];
+                rotate((mLeft[g] == p) == (mLeft[p] == x) ? p : x);
+            }
+            rotate(x);
+        }
+    }
+
+    /** Make the path from the tree root to x preferred, x becomes splay root */
+    private void access(int x) {
+        int last = -1;
+        for (int y = x; y >= 0; y = mParent[y]) {
+            splay(y);
+            mRight[y] = last;
+            last = y;
+        }
+        splay(x);
+    }
+
+    /** Make x the root of its tree */
+    private void makeRoot(int x) {
+        access(x);
+        mFlip[x] ^= true;
+        push(x);
+    }
+
+    /** Return the root node of the tree containing x */
+    private int findRoot(int x) {
+        access(x);
+        while (true) {
+            push(x);
+            if (mLeft[x] < 0) break;
+            x = mLeft[x];
+        }
+        splay(x);
+        return x;
+    }
+
+    /** Test if u and v are in the same tree */
+    boolean connected(int u, int v) {
+        return u == v || findRoot(u) == findRoot(v);
+    }
+
+    /** Link u and v by an edge, they must be in different trees */
+    void link(int u, int v) {
+        makeRoot(u);
+        mParent[u] = v;
+    }
+
+    /** Cut the edge between u and v, which must exist */
+    void cut(int u, int v) {
+        makeRoot(u);
+        access(v);
+        // the path u-v has two nodes: u is the left child of v
+        assert (mLeft[v] == u && mRight[u] < 0);
+        mLeft[v] = -1;
+        mParent[u] = -1;
+    }
+
+    /** Test if node x lies on the tree path between u and v */
+    boolean onPath(int u, int v, int x) {
+        if (!connected(u, x) || !connected(u, v))
+            return false;
+
+        makeRoot(u);
+        access(v);
+        // the splay tree of v holds exactly the path and has no path-parent
+        splay(x);
+        return mParent[x] < 0;
+    }
+
+    /**
+     * Write the nodes of the tree path from u to v in order into out, which
+     * must have room for size nodes. Returns the number of nodes, or -1 if u
+     * and v are not connected.
+     */
+    int path(int u, int v, int[] out) {
+        if (!connected(u, v))
+            return -1;
+
+        makeRoot(u);
+        access(v);
+
+        // in-order traversal of the splay tree of v
+        int len = 0, sp = 0;
+        int x = v;
+
+        while (x >= 0 || sp != 0) {
+            while (x >= 0) {
+                push(x);
+                mStack[sp++] = x;
+                x = mLeft[x];
+            }
+            x = mStack[--sp];
+            out[len++] = x;
+            x = mRight[x];
+        }
+
+        return len;
+    }
+}
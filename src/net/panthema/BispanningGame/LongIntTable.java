@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * src/net/panthema/BispanningGame/LongIntTable.java
+ *
+ * Hash table from long keys to non-negative int values without boxing, used
+ * for the transposition tables and position indexes of the game solvers.
+ *
+ *******************************************************************************
+ * Copyright (C) 2014 Timo Bingmann <tb@panthema.net>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package net.panthema.BispanningGame;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing with linear probing in parallel key and value arrays. The
+ * capacity is a power of two, which is doubled when half of the slots are
+ * used. Empty slots have value -1, hence only non-negative values can be
+ * stored, and entries cannot be removed.
+ *
+ * @author Timo Bingmann
+ */
+class LongIntTable
+{
+    /** Keys of the slots */
+    private long[] mKeys;
+
+    /** Values of the slots, -1 if the slot is empty */
+    private int[] mValues;
+
+    /** Number of used slots */
+    private int mSize;
+
+    /** Construct an empty table */
+    LongIntTable() {
+        mKeys = new long[64];
+        mValues = new int[64];
+        Arrays.fill(mValues, -1);
+    }
+
+    /** Scramble the key into the first slot to probe */
+    private int slot(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return (int) (key >>> 32) & (mKeys.length - 1);
+    }
+
+    /** Return the slot of key, or the empty slot where it would be put */
+    private int find(long key) {
+        int mask = mKeys.length - 1;
+        int i = slot(key);
+
+        while (mValues[i] >= 0 && mKeys[i] != key)
+            i = (i + 1) & mask;
+
+        return i;
+    }
+
+    /** Return the value of key, or -1 if it is not contained */
+    int get(long key) {
+        return mValues[find(key)];
+    }
+
+    /** Set the value of key, which must be non-negative */
+    void put(long key, int value) {
+        assert (value >= 0);
+
+        int i = find(key);
+        if (mValues[i] < 0) {
+            if (2 * (mSize + 1) > mKeys.length) {
+                grow();
+                i = find(key);
+            }
+            mKeys[i] = key;
+            ++mSize;
+        }
+        mValues[i] = value;
+    }
+
+    /** Return the number of keys */
+    int size() {
+        return mSize;
+    }
+
+    /** Double the capacity and reinsert all entries */
+    private void grow() {
+        long[] keys = mKeys;
+        int[] values = mValues;
+
+        mKeys = new long[2 * keys.length];
+        mValues = new int[2 * values.length];
+        Arrays.fill(mValues, -1);
+
+        for (int j = 0; j < keys.length; ++j) {
+            if (values[j] < 0)
+                continue;
+
+            int i = find(keys[j]);
+            mKeys[i] = keys[j];
+            mValues[i] = values[j];
+        }
+    }
+}
@@ -23,17 +23,16 @@
 
 package net.panthema.BispanningGame;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
-import java.util.Queue;
-import java.util.Set;
+import java.util.SplittableRandom;
 
 import edu.uci.ics.jung.algorithms.layout.StaticLayout;
 import edu.uci.ics.jung.graph.SparseMultigraph;
+import edu.uci.ics.jung.graph.util.EdgeType;
+import edu.uci.ics.jung.graph.util.Pair;
 
 /**
  * Edge Data Content
@@ -63,6 +62,9 @@ class MyEdge implements Comparable<MyEdge>
     /** if a cycle exists, then cycle breaker edges are marked */
     boolean isFix;
 
+    /** graph the edge was first added to, notified when the color flips */
+    MyGraph graph;
+
     /** require an id to construct */
     public MyEdge(int id) {
         this.id = id;
@@ -81,6 +83,11 @@ class MyEdge implements Comparable<MyEdge>
             color = 2;
         else if (color == 2)
             color = 1;
+        else
+            return;
+
+        if (graph != null)
+            graph.edgeFlipped(this);
     }
 
     /** Return current color name. */
@@ -97,6 +104,14 @@ class MyEdge implements Comparable<MyEdge>
     public int compareTo(MyEdge o) {
         return id - o.id;
     }
+
+    /**
+     * Hash by id, such that the iteration order of the graph's edge maps is
+     * reproducible, equality remains identity.
+     */
+    public int hashCode() {
+        return id;
+    }
 }
 
 /**
@@ -109,351 +124,294 @@ class MyGraph extends SparseMultigraph<Integer, MyEdge>
 {
     private static final long serialVersionUID = -6036820402858303673L;
 
+    /** Print messages on graph changes, disabled by batch tools */
+    static boolean mVerbose = true;
+
     /** Message to post render onto graph */
     public String message;
 
     /** Initial layout (loaded from GraphString) */
     public StaticLayout<Integer, MyEdge> mInitialLayout;
 
-    /** Generate a simple random bispanning graph with numVertex nodes */
-    static MyGraph getRandomGraph(int numVertex) {
-        while (true) {
-            // generate a random graph with numVertex vertexes
-            MyGraph g = new MyGraph();
-
-            if (numVertex == 0)
-                return g;
-
-            for (int i = 0; i < numVertex; ++i)
-                g.addVertex(i);
+    /** Cached compact snapshot of the graph structure, null if outdated */
+    private transient GraphCSR mCSR;
 
-            for (int i = 0; i < 2 * numVertex - 2; ++i) {
-                int x = (int) (Math.random() * numVertex);
-                int y = (int) (Math.random() * numVertex);
+    /** Dynamic forests of both colors, null if outdated */
+    private transient ColorForests mForests;
 
-                if (g.findEdge(x, y) != null)
-                    --i;
-                else
-                    g.addEdge(new MyEdge(i), x, y);
-            }
-
-            // test if generated graph is a bispanning graph
-            AlgBispanning ab = new AlgBispanning(g);
-            if (ab.isOkay())
-                return g;
-        }
-    }
-
-    /**
-     * Calculate an edge path from one edge of e0 to the other. If sameColor =
-     * false, then the a path (cycle minus e0) of the other color is calculated.
-     * If sameColor = true, then a true cycle of the color of e0 is calculated.
-     */
-    List<MyEdge> calcCycle(MyEdge e0, boolean sameColor) {
-        Integer e0_x = getEndpoints(e0).getFirst();
-        Integer e0_y = getEndpoints(e0).getSecond();
-
-        Queue<Integer> queue = new ArrayDeque<Integer>();
-
-        // initialize queue with node e0_x
-        queue.add(e0_x);
+    /** Tree packing kept across edits, created by the first graphChanged() */
+    private transient AlgBispanning mAlgBispanning;
 
-        // predecessor map to calculate path
-        Map<Integer, MyEdge> pred = new HashMap<Integer, MyEdge>();
+    /** Edges added since the last graphChanged() */
+    private transient List<MyEdge> mAddedEdges = new ArrayList<MyEdge>();
 
-        // Breadth first search
-        while (!queue.isEmpty()) {
-            Integer v = queue.poll();
+    /** Number of edges of each color removed since the last graphChanged() */
+    private transient int[] mRemovedEdges = new int[3];
 
-            for (MyEdge ei : getIncidentEdges(v)) {
-                // skip edges with same color?
-                if (!sameColor && ei.color == e0.color)
-                    continue;
-                // skip edges with other color? or == e0
-                if (sameColor && (ei.color != e0.color || ei == e0))
-                    continue;
+    /** Edges whose inCycle, inCut or isFix flags may be set */
+    private transient List<MyEdge> mMarkedEdges = new ArrayList<MyEdge>();
 
-                Integer w = getOpposite(v, ei);
+    /** Zobrist hash of the (color, origColor) state of all edges */
+    private transient long mStateHash;
 
-                if (pred.get(w) != null) // vertex already seen
-                    continue;
-
-                queue.add(w);
-                pred.put(w, ei);
-            }
-        }
+    /** Zobrist hash of the edges' ids and endpoints */
+    private transient long mStructureHash;
 
-        if (pred.get(e0_y) == null) // BFS did not reach other end of e0
-            return null;
-
-        // follow predecessor links back to other end
-        List<MyEdge> path = new ArrayList<MyEdge>();
-
-        Integer v = e0_y;
-        while (v != e0_x) {
-            MyEdge p = pred.get(v);
-            path.add(p);
-            v = getOpposite(v, p);
-        }
-
-        if (sameColor)
-            path.add(e0);
-
-        return path;
+    /** Return compact snapshot of the graph with current edge colors */
+    GraphCSR getCSR() {
+        if (mCSR == null)
+            mCSR = new GraphCSR(this);
+        else
+            mCSR.loadColors();
+        return mCSR;
     }
 
-    /** Calculate the edge cut of e0 which has the other color. */
-    Set<MyEdge> calcCut(MyEdge e0, boolean sameColor) {
-        Integer e0_x = getEndpoints(e0).getFirst();
-        Integer e0_y = getEndpoints(e0).getSecond();
-
-        // map containing mark of side of the cut for each vertex
-        Map<Integer, Integer> mark = new HashMap<Integer, Integer>();
-
-        // initialize BFS queue with first end of e0
-        Queue<Integer> queue = new ArrayDeque<Integer>();
-        queue.add(e0_x);
-        mark.put(e0_x, 1);
-
-        // First breadth search on e0_x's side
-        while (!queue.isEmpty()) {
-            Integer v = queue.poll();
-
-            for (MyEdge ei : getIncidentEdges(v)) {
-                // skip edges with e0's color?
-                if (sameColor && ei.color == e0.color)
-                    continue;
-                // skip edges with other color? or == e0
-                if (!sameColor && (ei.color != e0.color || ei == e0))
-                    continue;
-
-                Integer w = getOpposite(v, ei);
-
-                if (mark.containsKey(w)) // vertex already seen
-                    continue;
-
-                queue.add(w);
-                mark.put(w, 1);
-            }
-        }
+    /**
+     * Hand the dynamic forests over to an ExchangeAnalysis, which may use them
+     * on another thread, or return null if they cannot answer queries. New
+     * forests are built later unless they are given back by restoreForests().
+     */
+    ColorForests takeForests() {
+        ColorForests f = (mForests != null) ? mForests : new ColorForests(getCSR());
 
-        // if other end was marked: there is a path from e0_x to e0_y -> no cut.
-        if (mark.containsKey(e0_y))
+        if (!f.isUsable()) {
+            mForests = f;
             return null;
-
-        // initialize BFS queue with other end of e0
-        queue.add(e0_y);
-        mark.put(e0_y, 2);
-
-        Set<MyEdge> cut = new HashSet<MyEdge>();
-
-        // Second breadth search on e0_y's side
-        while (!queue.isEmpty()) {
-            Integer v = queue.poll();
-
-            for (MyEdge ei : getIncidentEdges(v)) {
-                Integer w = getOpposite(v, ei);
-
-                // skip edges with e0's color or other color?
-                if (sameColor == (ei.color == e0.color)) {
-                    // check if cut edge
-                    if (mark.containsKey(w) && mark.get(w) == 1)
-                        cut.add(ei);
-                }
-                else { // other color
-                    if (!mark.containsKey(w)) {
-                        // vertex not seen
-                        queue.add(w);
-                        mark.put(w, 2);
-                    }
-                }
-            }
         }
 
-        return cut;
+        mForests = null;
+        return f;
     }
 
-    /** Test if e0 is contained in a cycle of the same color in the graph */
-    boolean testCycle(MyEdge e0) {
-        Integer e0_x = getEndpoints(e0).getFirst();
-        Integer e0_y = getEndpoints(e0).getSecond();
+    /**
+     * Take back forests from takeForests() if their colors, given by their
+     * position hash, are those of the graph.
+     */
+    void restoreForests(ColorForests f, long hash) {
+        if (mForests == null && hash == getPositionHash() && f.graph.m == getEdgeCount() && f.graph.n == getVertexCount())
+            mForests = f;
+    }
 
-        Queue<Integer> queue = new ArrayDeque<Integer>();
+    /** Called by MyEdge.flipColor() to update the dynamic forests */
+    void edgeFlipped(MyEdge e) {
+        if (!containsEdge(e))
+            return;
 
-        // initialize queue with node e0
-        queue.add(e0_x);
+        mStateHash ^= zobrist(e.id, 3 - e.color, e.origColor) ^ zobrist(e);
 
-        Set<Integer> seen = new HashSet<Integer>();
+        if (mForests != null)
+            mForests.flip(mForests.graph.indexOf(e));
+    }
 
-        // Breadth first search
-        while (!queue.isEmpty()) {
-            Integer v = queue.poll();
+    /** Called if the color or origColor of e was overwritten */
+    void edgeRecolored(MyEdge e, int oldColor, int oldOrigColor) {
+        if (!containsEdge(e))
+            return;
 
-            for (MyEdge ei : getIncidentEdges(v)) {
-                if (ei.color != e0.color) // skip other colors
-                    continue;
-                if (ei == e0) // skip the seed edge
-                    continue;
+        mStateHash ^= zobrist(e.id, oldColor, oldOrigColor) ^ zobrist(e);
 
-                Integer w = getOpposite(v, ei);
+        if (oldColor != e.color)
+            mForests = null;
+    }
 
-                if (seen.contains(w)) // vertex already seen
-                    continue;
+    /** Remember that flags of e are set, and return it */
+    MyEdge markEdge(MyEdge e) {
+        mMarkedEdges.add(e);
+        return e;
+    }
 
-                queue.add(w);
-                seen.add(w);
-            }
+    /** Clear the inCycle, inCut and isFix flags of all marked edges */
+    void clearMarks() {
+        for (MyEdge ei : mMarkedEdges) {
+            ei.inCycle = false;
+            ei.inCut = false;
+            ei.isFix = false;
         }
-
-        return seen.contains(e0_y);
+        mMarkedEdges.clear();
     }
 
     /**
-     * Test if e0 closes a cycle of the same color in the graph. If a cycle is
-     * found, then mark edges of cycle with inCircle.
+     * Return the Zobrist key of an edge id in a (color, origColor) state. The
+     * keys are calculated by the SplitMix64 finalizer instead of being drawn
+     * from a table, hence any edge id is supported and keys are reproducible.
      */
-    boolean markCycle(MyEdge e0) {
-        for (MyEdge ei : getEdges())
-            ei.inCycle = false;
+    static long zobrist(int id, int color, int origColor) {
+        return mix64(((long) id << 4 | color << 2 | origColor) * 0x9E3779B97F4A7C15L);
+    }
 
-        // find cycle in graph with color of e0
-        List<MyEdge> cycle = calcCycle(e0, true);
+    /** SplitMix64 finalizer */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
 
-        if (cycle == null)
-            return false;
+    /** Return the Zobrist key of the edge's current state */
+    static long zobrist(MyEdge e) {
+        return zobrist(e.id, e.color, e.origColor);
+    }
 
-        // mark cycle edges
-        for (MyEdge ei : cycle)
-            ei.inCycle = true;
+    /** Return the Zobrist key of an edge id between vertices x and y */
+    static long zobristEdge(int id, int x, int y) {
+        long z = mix64(((long) Math.min(x, y) << 32 | Math.max(x, y)) * 0xC2B2AE3D27D4EB4FL);
+        return mix64((z + id) * 0x9E3779B97F4A7C15L);
+    }
 
-        return true;
+    /**
+     * Return the hash of the (color, origColor) state of all edges, which is
+     * maintained in O(1) per flipped, recolored, added or removed edge.
+     */
+    long getStateHash() {
+        return mStateHash;
     }
 
     /**
-     * Test if e0 closes a cycle of the same color, if it does, mark the cycle
-     * and calculate which of the cycle edges break the cycle correctly.
+     * Return the hash of the edges and their (color, origColor) state, which
+     * identifies a game position on this graph.
      */
-    boolean markCycleFixes(MyEdge e0) {
-        for (MyEdge ei : getEdges()) {
-            ei.isFix = false;
-            ei.inCycle = false;
-            ei.inCut = false;
-        }
+    long getPositionHash() {
+        return mStructureHash ^ mStateHash;
+    }
 
-        // find cycle in graph with color of e0
-        List<MyEdge> cycle = calcCycle(e0, true);
-        // System.out.println("cycle[" + e0 + "]: " + cycle);
+    /**
+     * Return the canonical encoding of the (color, origColor) state: four bits
+     * color | origColor << 2 per edge, in order of edge ids, sixteen edges per
+     * long.
+     */
+    long[] packColoring() {
+        MyEdge[] edges = getEdges().toArray(new MyEdge[getEdgeCount()]);
+        Arrays.sort(edges);
 
-        if (cycle == null)
-            return false;
+        long[] packed = new long[(edges.length + 15) / 16];
 
-        // mark cycle edges
-        for (MyEdge ei : cycle)
-            ei.inCycle = true;
+        for (int i = 0; i < edges.length; ++i) {
+            long v = edges[i].color | edges[i].origColor << 2;
+            packed[i / 16] |= v << (4 * (i % 16));
+        }
 
-        // find cut in graph with color of e0
-        Set<MyEdge> cut = calcCut(e0, true);
-        // System.out.println("cut  [" + e0 + "]: " + cut);
+        return packed;
+    }
 
-        if (cut == null)
-            return false;
+    @Override
+    public boolean addVertex(Integer v) {
+        mCSR = null;
+        mForests = null;
+        return super.addVertex(v);
+    }
 
-        // mark cut edges and intersection
-        for (MyEdge ei : cut) {
-            ei.inCut = true;
-            ei.isFix = ei.inCycle;
-        }
+    @Override
+    public boolean removeVertex(Integer v) {
+        mCSR = null;
+        mForests = null;
+        return super.removeVertex(v);
+    }
 
+    @Override
+    public boolean addEdge(MyEdge e, Pair<? extends Integer> endpoints, EdgeType edgeType) {
+        mCSR = null;
+        mForests = null;
+        if (!super.addEdge(e, endpoints, edgeType))
+            return false;
+        mStateHash ^= zobrist(e);
+        mStructureHash ^= zobristEdge(e.id, endpoints.getFirst(), endpoints.getSecond());
+        if (e.graph == null)
+            e.graph = this;
+        if (mAlgBispanning != null)
+            mAddedEdges.add(e);
         return true;
     }
 
-    /** Return true if the vertex v is a leaf in the color tree */
-    boolean isTreeLeaf(Integer v, int color) {
-        int count = 0;
-
-        for (MyEdge e : getIncidentEdges(v)) {
-            if (e.color == color)
-                count++;
+    @Override
+    public boolean removeEdge(MyEdge e) {
+        mCSR = null;
+        mForests = null;
+        if (containsEdge(e)) {
+            if (mAlgBispanning != null && !mAddedEdges.remove(e))
+                mRemovedEdges[e.color]++;
+            mStateHash ^= zobrist(e);
+
+            Pair<Integer> p = getEndpoints(e);
+            mStructureHash ^= zobristEdge(e.id, p.getFirst(), p.getSecond());
         }
-
-        return (count == 1);
+        if (e.graph == this)
+            e.graph = null;
+        return super.removeEdge(e);
     }
 
-    /** Test if the edge e0 leads to a unique exchange */
-    @SuppressWarnings("unused")
-    boolean testUniqueExchange(MyEdge e0) {
-        if (testCycle(e0))
-            return false; // Bad throw new RuntimeException("Bad!");
-
-        List<MyEdge> cycle = calcCycle(e0, false);
-        if (cycle == null)
-            throw new RuntimeException("UEtest: edge is in a cycle!");
-
-        Set<MyEdge> cut = calcCut(e0, false);
-        if (cut == null)
-            throw new RuntimeException("UEtest: edge induces no cut!");
-
-        Set<MyEdge> intersection = new HashSet<MyEdge>(cycle);
-        intersection.retainAll(cut);
-
-        if (false) {
-            System.out.println("cycle[" + e0 + "]: " + cycle);
-            System.out.println("cut  [" + e0 + "]: " + cut);
-            System.out.println("inter[" + e0 + "]: " + intersection);
-        }
+    /** Generate a simple random bispanning graph with numVertex nodes */
+    static MyGraph getRandomGraph(int numVertex) {
+        return getRandomGraph(numVertex, false);
+    }
 
-        return intersection.size() == 1;
+    /**
+     * Generate a simple random bispanning graph with numVertex nodes, which is
+     * atomic if requested. Simple bispanning graphs with 2 or 3 nodes do not
+     * exist.
+     */
+    static MyGraph getRandomGraph(int numVertex, boolean atomic) {
+        return BispanningGenerator.generate(numVertex, atomic, new SplittableRandom());
     }
 
     /** Calculate edges of graph which lead to unique exchanges. */
-    @SuppressWarnings("unused")
     void calcUniqueExchanges() {
-
-        for (MyEdge ei : getEdges()) {
-            ei.isUE = testUniqueExchange(ei);
-
-            if (false) {
-                Integer x = getEndpoints(ei).getFirst();
-                Integer y = getEndpoints(ei).getSecond();
-
-                if (isTreeLeaf(x, 1) || isTreeLeaf(y, 1) || isTreeLeaf(x, 2) || isTreeLeaf(y, 2))
-                    ei.isUE = false;
-            }
-        }
-
-        for (MyEdge ei : getEdges()) {
-            ei.inCycle = false;
-            ei.inCut = false;
-            ei.isFix = false;
-        }
+        ExchangeAnalysis a = new ExchangeAnalysis(this);
+        a.calcUniqueExchanges();
+        a.publish();
     }
 
     /** Update original color fields from current color */
     void updateOriginalColor() {
         for (MyEdge ei : getEdges()) {
+            int oldOrigColor = ei.origColor;
             ei.origColor = ei.color;
+            edgeRecolored(ei, ei.color, oldOrigColor);
         }
     }
 
-    /** Called by EditingGraphMousePlugin when the graph changed. */
+    /**
+     * Called by EditingGraphMousePlugin when the graph changed. The tree
+     * packing is only repaired around the edges added or removed since the
+     * last call.
+     */
     void graphChanged() {
-        System.out.println("Graph changed!");
+        if (mVerbose)
+            System.out.println("Graph changed!");
+
+        // the tree packing may recolor edges
+        mForests = null;
+
+        if (mAlgBispanning == null)
+            mAlgBispanning = new AlgBispanning(this);
+        else
+            mAlgBispanning.update(this, mAddedEdges, mRemovedEdges);
+
+        mAddedEdges.clear();
+        Arrays.fill(mRemovedEdges, 0);
 
-        AlgBispanning ab = new AlgBispanning(this);
-        if (ab.isOkay()) {
+        if (mAlgBispanning.isOkay()) {
             for (MyEdge ei : getEdges()) {
-                if (ei.origColor == 0) ei.origColor = ei.color;
+                if (ei.origColor == 0) {
+                    ei.origColor = ei.color;
+                    edgeRecolored(ei, ei.color, 0);
+                }
             }
             message = "";
             calcUniqueExchanges();
-            System.out.println("Graph is bispanning!");
+            if (mVerbose)
+                System.out.println("Graph is bispanning!");
         }
         else {
             message = "Graph is not bispanning!";
-            System.out.println(message);
+            if (mVerbose)
+                System.out.println(message);
         }
     }
 
+    /** Return true if graphChanged() found a packing of two spanning trees */
+    boolean isBispanning() {
+        return mAlgBispanning != null && mAlgBispanning.isOkay();
+    }
+
     /** Return maximum vertex id */
     int getMaxVertexId() {
         int vertexMax = 0;
@@ -486,172 +444,143 @@ class MyGraph extends SparseMultigraph<Integer, MyEdge>
         return count;
     }
 
-    /** Increment binary number stored in the vector v */
-    static boolean increment_int_vector(int[] v) {
-        for (int i = 0; i < v.length; ++i) {
-            if (v[i] == -1)
-                continue;
-
-            if (v[i] == 0) {
-                v[i] = 1;
-                return true;
-            }
-            else {
-                v[i] = 0;
-            }
-        }
-        return false;
-    }
-
     /**
-     * Tests if the graph is an atomic bispanner, after Nash-Williams' criterion
+     * Tests if the graph is an atomic bispanner using the (2,2)-pebble game.
+     * Returns false if the graph is not bispanning.
      */
     boolean isAtomicBispanner() {
+        return new AlgPebbleGame(getCSR()).isAtomic();
+    }
 
-        final int maxVertex = getMaxVertexId();
-        final int numVertex = getVertexCount();
-
-        // make a mapping V -> {0,...,n-1}
-        final int[] vmap = new int[maxVertex + 1];
-
-        int k = 0;
-        for (Integer v : getVertices())
-            vmap[v] = k++;
-        assert (k == numVertex);
-
-        // iterate over all possible vertex set partitions
-        EnumerateSetPartitions en = new EnumerateSetPartitions(numVertex);
-
-        return en.enumerate(new SetPartitionFunctor() {
-            public boolean partition(final int[] setp) {
-                // calculate number of set partitions
-                int npart = 0;
-                for (int i = 0; i < setp.length; ++i) {
-                    if (npart < setp[i] + 1)
-                        npart = setp[i] + 1;
-                }
-
-                // skip trivial partitions
-                if (npart == 1 || npart == numVertex)
-                    return true;
-
-                // count number of edges crossing partition members
-                int cross = 0;
-
-                for (MyEdge e : getEdges()) {
-                    Integer v = getEndpoints(e).getFirst();
-                    Integer w = getEndpoints(e).getSecond();
-
-                    if (setp[vmap[v]] != setp[vmap[w]])
-                        ++cross;
-                }
-
-                if (cross == 2 * (npart - 1)) // composite
-                    return false;
+    /**
+     * Tests if the graph is an atomic bispanner, after Nash-Williams'
+     * criterion, by enumerating all vertex set partitions.
+     */
+    boolean isAtomicBispannerEnumerate() {
+        return isAtomicBispannerEnumerate(false);
+    }
 
-                return true;
+    /**
+     * Tests if the graph is an atomic bispanner, after Nash-Williams'
+     * criterion, by enumerating all vertex set partitions, optionally split
+     * into prefix tasks running on all cores.
+     */
+    boolean isAtomicBispannerEnumerate(boolean parallel) {
+
+        final GraphCSR g = getCSR();
+        final int numVertex = g.n;
+
+        // low elements move most often, hence assign them to the vertices
+        // with fewest incident edges.
+        Integer[] byDegree = new Integer[numVertex];
+        for (int v = 0; v < numVertex; ++v)
+            byDegree[v] = v;
+        Arrays.sort(byDegree, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return (g.offset[a + 1] - g.offset[a]) - (g.offset[b + 1] - g.offset[b]);
             }
         });
-    }
-
-    /** Tests if the graph is an atomic bispanner. */
-    boolean isAtomicBispannerTutte() {
-
-        int maxEdge = getMaxEdgeId();
-
-        int[] subset = new int[maxEdge + 1];
 
-        // mark all existing edges as 0
-        for (int i = 0; i < subset.length; ++i)
-            subset[i] = -1;
+        final int[] vertex = new int[numVertex];
+        for (int i = 0; i < numVertex; ++i)
+            vertex[i] = byDegree[i];
+
+        // iterate over all possible vertex set partitions, the crossing edges
+        // are counted incrementally as vertices move between blocks
+        SetPartitionFunctorFactory factory = new SetPartitionFunctorFactory() {
+            public SetPartitionFunctor create(final EnumerateSetPartitions en) {
+                return new SetPartitionMoveFunctor() {
+                    final int[] offset = g.offset, adjVertex = g.adjVertex;
+
+                    // block of each vertex, follows the moves
+                    int[] block = new int[numVertex];
+
+                    // number of edges crossing partition members
+                    int cross = 0;
+
+                    public void move(int i, int from, int to) {
+                        int v = vertex[i];
+
+                        // update crossing state of edges incident to v
+                        for (int p = offset[v]; p < offset[v + 1]; ++p) {
+                            int w = adjVertex[p];
+                            if (w == v)
+                                continue;
+
+                            if (block[w] != from)
+                                --cross;
+                            if (block[w] != to)
+                                ++cross;
+                        }
+                        block[v] = to;
+                    }
 
-        for (MyEdge e : getEdges())
-            subset[e.id] = 0;
+                    public boolean partition(final int[] setp) {
+                        int npart = en.numBlocks();
 
-        // iterate over all possible cut sets
-        while (increment_int_vector(subset)) {
+                        // skip trivial partitions
+                        if (npart == 1 || npart == numVertex)
+                            return true;
 
-            // copy graph, excluding all edges in cut set
-            MyGraph g = new MyGraph();
+                        if (cross == 2 * (npart - 1)) // composite
+                            return false;
 
-            for (Integer v : getVertices()) {
-                g.addVertex(v);
+                        return true;
+                    }
+                };
             }
+        };
 
-            int cutsize = 0;
-
-            for (MyEdge e : getEdges()) {
+        if (parallel)
+            return EnumerateSetPartitions.enumerateParallel(numVertex, factory);
 
-                if (subset[e.id] == -1)
-                    continue;
-
-                if (subset[e.id] != 0) {
-                    cutsize++;
-                    continue;
-                }
-
-                Integer x = getEndpoints(e).getFirst();
-                Integer y = getEndpoints(e).getSecond();
+        EnumerateSetPartitions en = new EnumerateSetPartitions(numVertex);
+        return en.enumerate(factory.create(en));
+    }
 
-                g.addEdge(e, x, y);
-            }
+    /**
+     * Tests if the graph is an atomic bispanner by checking Tutte's criterion
+     * on all 2^m edge cut sets. Exponential time, used as reference.
+     */
+    boolean isAtomicBispannerTutte() {
+        GraphCSR g = getCSR();
+        return !findTightCut(g, new UnionFind(g.n, true), 0, 0);
+    }
 
-            if (cutsize == getEdgeCount())
-                continue;
+    /**
+     * Decide recursively for edges e..m-1 whether they are in the cut set or
+     * kept, the kept edges are united and the unions undone on backtracking.
+     * Returns true if a proper non-empty cut set with 2 (comp - 1) edges is
+     * found.
+     */
+    private static boolean findTightCut(GraphCSR g, UnionFind uf, int e, int cutsize) {
+        if (e == g.m) {
+            if (cutsize == 0 || cutsize == g.m)
+                return false;
 
-            int comp = g.countComponents();
+            return (2 * (uf.count() - 1) == cutsize);
+        }
 
-            // System.out.println(Arrays.toString(subset) + " - " + (2 * (comp -
-            // 1)) + " - " + cutsize);
+        // keep edge e
+        int mark = uf.snapshot();
+        uf.union(g.tail[e], g.head[e]);
+        boolean found = findTightCut(g, uf, e + 1, cutsize);
+        uf.rollback(mark);
 
-            if (2 * (comp - 1) == cutsize)
-                return false;
-        }
+        if (found)
+            return true;
 
-        return true;
+        // put edge e into the cut set
+        return findTightCut(g, uf, e + 1, cutsize + 1);
     }
 
     /** Count the number of components in the graph */
     int countComponents() {
+        return getCSR().countComponents();
+    }
 
-        // predecessor vertex in BFS tree
-        int[] pred = new int[getMaxVertexId() + 1];
-        for (int i = 0; i < pred.length; ++i)
-            pred[i] = i;
-
-        int numComponents = 0;
-
-        // BFS queue
-        ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
-
-        // iterate over all vertices as roots
-        for (Integer r : getVertices()) {
-
-            if (pred[r] != r)
-                continue;
-
-            ++numComponents; // new root, new component
-
-            queue.addLast(r);
-
-            while (!queue.isEmpty()) {
-
-                Integer v = queue.pollFirst();
-
-                // visit all neighbors of v
-                for (MyEdge ev : getIncidentEdges(v)) {
-
-                    Integer w = getOpposite(v, ev);
-
-                    if (pred[w] != w || w == r) // already seen
-                        continue;
-
-                    queue.addLast(w);
-                    pred[w] = v;
-                }
-            }
-        }
-
-        return numComponents;
+    /** Count the number of components, in parallel for large graphs */
+    int countComponents(boolean parallel) {
+        return getCSR().countComponents(parallel);
     }
 }
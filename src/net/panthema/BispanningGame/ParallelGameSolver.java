@@ -0,0 +1,360 @@
+/*******************************************************************************
+ * src/net/panthema/BispanningGame/ParallelGameSolver.java
+ *
+ * Multi-threaded solver for the bispanning game, deciding whether Alice can
+ * flip all edges within a given number of rounds against any play of Bob.
+ *
+ *******************************************************************************
+ * Copyright (C) 2014 Timo Bingmann <tb@panthema.net>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package net.panthema.BispanningGame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Same AND-OR search as GameSolver, see there for positions and moves, but
+ * positions with many remaining rounds are split into fork/join tasks: after
+ * Alice's first (best ordered) move failed, her remaining moves are searched
+ * in parallel, and the first winning move cancels its siblings. All threads
+ * share striped transposition tables, each stripe is a LongIntTable guarded
+ * by its own lock. Results of cancelled searches are never stored.
+ *
+ * @author Timo Bingmann
+ */
+class ParallelGameSolver extends GameSolver
+{
+    /** Positions with at least this many remaining rounds are split */
+    static final int SPLIT_ROUNDS = 5;
+
+    /** Result of a search which was cancelled */
+    private static final int CANCELLED = -1;
+
+    /** Transposition table: minimum number of rounds proven winnable */
+    private final StripedTable mWin = new StripedTable(true);
+
+    /** Transposition table: maximum number of rounds proven not winnable */
+    private final StripedTable mFail = new StripedTable(false);
+
+    /** Alice's move in winning positions, an edge index */
+    private final StripedTable mBest = new StripedTable(false);
+
+    /** Per-thread scratch space */
+    private final ThreadLocal<Workspace> mWorkspace;
+
+    /** Pool running the search */
+    private final ForkJoinPool mPool;
+
+    /**
+     * Hash table from positions to ints, split into stripes each guarded by
+     * its own lock. put() keeps the minimum or maximum value of a key.
+     */
+    static class StripedTable
+    {
+        /** Number of stripes, a power of two */
+        private static final int STRIPES = 64;
+
+        private final LongIntTable[] mStripes = new LongIntTable[STRIPES];
+
+        /** Keep minimum instead of maximum on put */
+        private final boolean mMinimum;
+
+        StripedTable(boolean minimum) {
+            mMinimum = minimum;
+            for (int i = 0; i < STRIPES; ++i)
+                mStripes[i] = new LongIntTable();
+        }
+
+        private LongIntTable stripe(long key) {
+            key *= 0x9E3779B97F4A7C15L;
+            return mStripes[(int) (key >>> 58)];
+        }
+
+        /** Return the value of key, or -1 if it is not contained */
+        int get(long key) {
+            LongIntTable table = stripe(key);
+            synchronized (table) {
+                return table.get(key);
+            }
+        }
+
+        void put(long key, int value) {
+            LongIntTable table = stripe(key);
+            synchronized (table) {
+                int old = table.get(key);
+                if (old < 0 || (mMinimum ? value < old : value > old))
+                    table.put(key, value);
+            }
+        }
+    }
+
+    /** Chain of cancellation flags of a task and its ancestors */
+    private static class Cancel
+    {
+        final Cancel parent;
+        volatile boolean cancelled;
+
+        Cancel(Cancel parent) {
+            this.parent = parent;
+        }
+
+        boolean isCancelled() {
+            for (Cancel c = this; c != null; c = c.parent) {
+                if (c.cancelled)
+                    return true;
+            }
+            return false;
+        }
+    }
+
+    /** Create solver for the graph and its current original colors */
+    ParallelGameSolver(MyGraph g, boolean uniqueOnly, int numThreads) {
+        super(g, uniqueOnly);
+
+        mWorkspace = new ThreadLocal<Workspace>() {
+            protected Workspace initialValue() {
+                return new Workspace(mGraph);
+            }
+        };
+
+        mPool = new ForkJoinPool(numThreads);
+    }
+
+    Workspace workspace() {
+        return mWorkspace.get();
+    }
+
+    int lookup(long pos, int k) {
+        int w = mWin.get(pos);
+        if (w >= 0 && w <= k)
+            return 1;
+
+        int f = mFail.get(pos);
+        if (f >= 0 && f >= k)
+            return 0;
+
+        return -1;
+    }
+
+    void storeWin(long pos, int k, int e) {
+        mWin.put(pos, k);
+        mBest.put(pos, e);
+    }
+
+    void storeFail(long pos, int k) {
+        mFail.put(pos, k);
+    }
+
+    int storedBest(long pos) {
+        return mBest.get(pos);
+    }
+
+    /**
+     * Search whether Alice can flip all edges within k rounds from pos.
+     * Returns 1 or 0, or CANCELLED if the search was cancelled.
+     */
+    private int search(long pos, int k, Cancel cancel) {
+        int r = probe(pos, k);
+        if (r >= 0)
+            return r;
+
+        if (cancel.isCancelled())
+            return CANCELLED;
+
+        // tasks run while joining are nested calls, which pop their own lists
+        Workspace ws = workspace();
+        int base = expand(ws, pos);
+        r = searchMoves(ws, base, pos, k, cancel);
+        ws.top = base;
+        return r;
+    }
+
+    /** Search the moves of the list at base, see search() */
+    private int searchMoves(Workspace ws, int base, long pos, int k, Cancel cancel) {
+        int count = ws.stack[base];
+        int first = (k >= SPLIT_ROUNDS) ? 1 : count;
+
+        // young brothers wait: search the first moves sequentially
+        for (int i = 0; i < first && i < count; ++i) {
+            int rec = ws.stack[base + 1 + i], e = ws.stack[rec], r = 1;
+
+            for (int j = 0; j < ws.stack[rec + 1] && r == 1; ++j)
+                r = search(pos ^ (1L << e) ^ (1L << ws.stack[rec + 2 + j]), k - 1, cancel);
+
+            if (r != 0)
+                return finish(pos, k, e, r);
+        }
+
+        if (first >= count) {
+            storeFail(pos, k);
+            return 0;
+        }
+
+        // search the remaining moves in parallel, until one wins
+        Cancel siblings = new Cancel(cancel);
+        ArrayList<MoveTask> tasks = new ArrayList<MoveTask>();
+
+        for (int i = first; i < count; ++i) {
+            int rec = ws.stack[base + 1 + i];
+            tasks.add(new MoveTask(pos, ws.stack[rec], answers(ws, rec), k, siblings));
+        }
+
+        MoveTask.invokeAll(tasks);
+
+        boolean cancelled = false;
+
+        for (MoveTask t : tasks) {
+            int r = t.join();
+            if (r == 1)
+                return finish(pos, k, t.mEdge, 1);
+            if (r == CANCELLED)
+                cancelled = true;
+        }
+
+        if (cancelled)
+            return CANCELLED;
+
+        storeFail(pos, k);
+        return 0;
+    }
+
+    /** Store a winning move, or pass on cancellation */
+    private int finish(long pos, int k, int e, int r) {
+        if (r == CANCELLED)
+            return CANCELLED;
+
+        storeWin(pos, k, e);
+        return 1;
+    }
+
+    /** Copy the answers of the move record at rec for a task */
+    private static int[] answers(Workspace ws, int rec) {
+        return Arrays.copyOfRange(ws.stack, rec + 2, rec + 2 + ws.stack[rec + 1]);
+    }
+
+    /** Search whether Alice flipping e wins against all of Bob's answers */
+    private int searchMove(long pos, int e, int[] answers, int k, Cancel cancel) {
+        for (int x : answers) {
+            int r = search(pos ^ (1L << e) ^ (1L << x), k - 1, cancel);
+            if (r != 1)
+                return r;
+        }
+        return 1;
+    }
+
+    /** Task searching one of Alice's moves */
+    private class MoveTask extends RecursiveTask<Integer>
+    {
+        private static final long serialVersionUID = -2309213564916524521L;
+
+        final long mPos;
+        final int mEdge;
+        final int[] mAnswers;
+        final int mRounds;
+        final Cancel mCancel;
+
+        MoveTask(long pos, int e, int[] answers, int k, Cancel cancel) {
+            mPos = pos;
+            mEdge = e;
+            mAnswers = answers;
+            mRounds = k;
+            mCancel = cancel;
+        }
+
+        protected Integer compute() {
+            int r = searchMove(mPos, mEdge, mAnswers, mRounds, mCancel);
+            if (r == 1)
+                mCancel.cancelled = true; // siblings are not needed anymore
+            return r;
+        }
+    }
+
+    /** Return true if Alice can flip all edges within k rounds from pos */
+    boolean win(final long pos, final int k) {
+        return mPool.invoke(new RecursiveTask<Integer>() {
+            private static final long serialVersionUID = 7410364920582396423L;
+
+            protected Integer compute() {
+                return search(pos, k, new Cancel(null));
+            }
+        }) == 1;
+    }
+
+    /** Stop the solver's threads */
+    void shutdown() {
+        mPool.shutdown();
+    }
+
+    /**
+     * Decide for all named graphs, and count random graphs, whether Alice can
+     * finish in edgeCount/2 rounds. Alice plays unique exchanges, unless -f
+     * allows free exchanges. Usage: ParallelGameSolver [-f] [-t threads]
+     * [count vertices]
+     */
+    public static void main(String[] args) {
+        boolean uniqueOnly = true;
+        int numThreads = Runtime.getRuntime().availableProcessors();
+
+        int i = 0;
+        for (; i < args.length && args[i].startsWith("-"); ++i) {
+            if (args[i].equals("-f"))
+                uniqueOnly = false;
+            else if (args[i].equals("-t") && i + 1 < args.length)
+                numThreads = Integer.parseInt(args[++i]);
+        }
+
+        ArrayList<String> names = new ArrayList<String>();
+        ArrayList<MyGraph> graphs = new ArrayList<MyGraph>();
+
+        if (i + 2 <= args.length) {
+            int count = Integer.parseInt(args[i]);
+            int numVertex = Integer.parseInt(args[i + 1]);
+
+            for (int j = 0; j < count; ++j) {
+                names.add("random " + j);
+                graphs.add(MyGraph.getRandomGraph(numVertex));
+            }
+        }
+        else {
+            for (int j = 0; j < NamedGraphs.size(); ++j) {
+                names.add(NamedGraphs.getName(j));
+                graphs.add(NamedGraphs.getGraph(j));
+            }
+        }
+
+        for (int j = 0; j < graphs.size(); ++j) {
+            MyGraph g = graphs.get(j);
+
+            if (!new AlgBispanning(g).isOkay()) {
+                System.out.println(names.get(j) + ": graph is not bispanning!");
+                continue;
+            }
+            g.updateOriginalColor();
+
+            long t0 = System.currentTimeMillis();
+            ParallelGameSolver solver = new ParallelGameSolver(g, uniqueOnly, numThreads);
+            boolean win = solver.winsInMinimum();
+            long t1 = System.currentTimeMillis();
+            solver.shutdown();
+
+            System.out.println(names.get(j) + ": edges=" + g.getEdgeCount() + " alice_wins_in_" + (g.getEdgeCount() / 2)
+                    + "=" + win + " nodes=" + solver.getNodes() + " time=" + (t1 - t0) + "ms");
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*******************************************************************************
+ * src/net/panthema/BispanningGame/PositionDB.java
+ *
+ * Memory-mapped database of solved game positions, mapping the position hash
+ * to the optimal number of remaining rounds and Alice's optimal move.
+ *
+ *******************************************************************************
+ * Copyright (C) 2014 Timo Bingmann <tb@panthema.net>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package net.panthema.BispanningGame;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The file is an open addressing hash table with linear probing: a header of
+ * six ints (magic, version, capacity, count, flags, unused) followed by
+ * capacity slots of 16 bytes: the position key (0 = empty slot), the id of the edge Alice should
+ * flip and the number of rounds she needs against optimal play of Bob. The
+ * key is MyGraph.getPositionHash() of the position in which Alice moves. A
+ * lookup probes about two slots of the mapped file.
+ *
+ * The values depend on the rule set: if FLAG_UNIQUE_ONLY is set, Alice may
+ * only play unique exchanges, otherwise free exchanges. Callers must not use
+ * a database built for the other rule set.
+ *
+ * @author Timo Bingmann
+ */
+class PositionDB
+{
+    /** File name of the database loaded by the game, if present */
+    static final String DEFAULT_FILE = "bispanning.posdb";
+
+    /** Rounds value of positions in which Alice cannot force a finish */
+    static final int NEVER = 0xFFFF;
+
+    private static final int MAGIC = 0x42535044; // "BSPD"
+
+    private static final int VERSION = 2;
+
+    private static final int HEADER = 24, SLOT = 16;
+
+    /** Flag if Alice was restricted to unique exchanges */
+    static final int FLAG_UNIQUE_ONLY = 1;
+
+    /** The mapped file */
+    private final MappedByteBuffer mBuffer;
+
+    /** Number of slots, a power of two */
+    private final int mCapacity;
+
+    /** Flags of the file */
+    private final int mFlags;
+
+    /** Open a database file */
+    PositionDB(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            mBuffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        }
+        finally {
+            raf.close();
+        }
+
+        if (mBuffer.getInt(0) != MAGIC || mBuffer.getInt(4) != VERSION)
+            throw new IOException("Not a position database: " + file);
+
+        mCapacity = mBuffer.getInt(8);
+        mFlags = mBuffer.getInt(16);
+
+        if (Integer.bitCount(mCapacity) != 1 || HEADER + (long) mCapacity * SLOT > mBuffer.capacity())
+            throw new IOException("Truncated position database: " + file);
+    }
+
+    /** Open the default database file, return null if it does not exist */
+    static PositionDB openDefault() {
+        File file = new File(DEFAULT_FILE);
+        if (!file.exists())
+            return null;
+
+        try {
+            return new PositionDB(file);
+        }
+        catch (IOException e) {
+            System.err.println("Could not open position database: " + e);
+            return null;
+        }
+    }
+
+    /** Return true if the database was solved for unique exchanges only */
+    boolean isUniqueOnly() {
+        return (mFlags & FLAG_UNIQUE_ONLY) != 0;
+    }
+
+    /** Return true if the database was solved for the given rule set */
+    boolean matches(boolean allowFreeExchange) {
+        return isUniqueOnly() != allowFreeExchange;
+    }
+
+    /** First probe slot of a key */
+    private static int home(long key, int capacity) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & (capacity - 1);
+    }
+
+    /** Return the slot of key, or -1 if the position is not stored */
+    int find(long key) {
+        for (int i = home(key, mCapacity);; i = (i + 1) & (mCapacity - 1)) {
+            long k = mBuffer.getLong(HEADER + i * SLOT);
+            if (k == key)
+                return i;
+            if (k == 0)
+                return -1;
+        }
+    }
+
+    /** Return the id of the edge Alice should flip in a slot, or -1 */
+    int getEdgeId(int slot) {
+        return mBuffer.getInt(HEADER + slot * SLOT + 8);
+    }
+
+    /** Return the number of rounds Alice needs in a slot, or NEVER */
+    int getRounds(int slot) {
+        return mBuffer.getInt(HEADER + slot * SLOT + 12);
+    }
+
+    /** Return the rounds Alice needs in the position of g, or -1 if unknown */
+    int getRounds(MyGraph g) {
+        int slot = find(g.getPositionHash());
+        return (slot < 0) ? -1 : getRounds(slot);
+    }
+
+    /**
+     * Return the rounds Alice needs after Bob flipped the edge f of g, or -1
+     * if unknown. The key is calculated from the current one in O(1).
+     */
+    int getRoundsAfterFlip(MyGraph g, MyEdge f) {
+        long key = g.getPositionHash();
+        key ^= MyGraph.zobrist(f) ^ MyGraph.zobrist(f.id, 3 - f.color, f.origColor);
+
+        int slot = find(key);
+        return (slot < 0) ? -1 : getRounds(slot);
+    }
+
+    /** Return the edge Alice should flip in the position of g, or null */
+    MyEdge getBestMove(MyGraph g) {
+        int slot = find(g.getPositionHash());
+        if (slot < 0 || getEdgeId(slot) < 0)
+            return null;
+
+        for (MyEdge e : g.getEdges()) {
+            if (e.id == getEdgeId(slot))
+                return e;
+        }
+        return null;
+    }
+
+    /** Write count entries into a new database file */
+    static void write(File file, long[] keys, int[] edgeIds, int[] rounds, int count, int flags) throws IOException {
+        int capacity = Integer.highestOneBit(Math.max(2 * count, 2) - 1) << 1;
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            long size = HEADER + (long) capacity * SLOT;
+            raf.setLength(0);
+            raf.setLength(size);
+
+            MappedByteBuffer buf = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+            buf.putInt(0, MAGIC);
+            buf.putInt(4, VERSION);
+            buf.putInt(8, capacity);
+            buf.putInt(12, count);
+            buf.putInt(16, flags);
+
+            for (int j = 0; j < count; ++j) {
+                assert (keys[j] != 0);
+
+                int i = home(keys[j], capacity);
+                while (buf.getLong(HEADER + i * SLOT) != 0)
+                    i = (i + 1) & (capacity - 1);
+
+                buf.putLong(HEADER + i * SLOT, keys[j]);
+                buf.putInt(HEADER + i * SLOT + 8, edgeIds[j]);
+                buf.putInt(HEADER + i * SLOT + 12, rounds[j]);
+            }
+
+            buf.force();
+        }
+        finally {
+            raf.close();
+        }
+    }
+}
@@ -0,0 +1,449 @@
+/*******************************************************************************
+ * src/net/panthema/BispanningGame/SelfPlay.java
+ *
+ * Command line batch mode playing many games between configurable Alice and
+ * Bob strategies in parallel, reporting throughput and move latencies.
+ *
+ *******************************************************************************
+ * Copyright (C) 2014 Timo Bingmann <tb@panthema.net>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package net.panthema.BispanningGame;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+
+/**
+ * Games are played on GameEngine without user interface, on random graphs or
+ * on graph6/sparse6 lines read from a file, which are used in turn. As in
+ * GenerateGraphs, each chunk of CHUNK games gets its own SplittableRandom
+ * split off the seeded root, hence results do not depend on the number of
+ * threads, only the timings do.
+ *
+ * The latency of a move is the time of its cycle/cut computation in
+ * GameEngine.computeAliceMove() or computeBobMove(), not including the time
+ * the strategies need to choose the move. Games not finished within
+ * ROUND_LIMIT times the edge count rounds are aborted.
+ *
+ * Usage: SelfPlay [-s seed] [-t threads] [-a random|greedy|solver]
+ * [-b random|default|solver] [-u] (-n vertices | -i file) count
+ *
+ * @author Timo Bingmann
+ */
+public class SelfPlay
+{
+    /** Alice's strategies */
+    enum AliceStrategy {
+        /** Flip a random legal edge */
+        RANDOM,
+        /** Prefer unflipped edges whose exchanges flip few edges back */
+        GREEDY,
+        /** Play optimally using GameSolver, at most 64 edges */
+        SOLVER
+    }
+
+    /** Bob's strategies */
+    enum BobStrategy {
+        /** Flip a random fix edge */
+        RANDOM,
+        /** GameEngine's choice, as in the game */
+        DEFAULT,
+        /** Delay Alice maximally using GameSolver, at most 64 edges */
+        SOLVER
+    }
+
+    /** Number of games played by one task */
+    static final int CHUNK = 64;
+
+    /** Games are aborted after ROUND_LIMIT times the edge count rounds */
+    static final int ROUND_LIMIT = 4;
+
+    /** Latency histogram resolution is one microsecond up to this bucket */
+    static final int LATENCY_BUCKETS = 1 << 16;
+
+    private final AliceStrategy mAlice;
+    private final BobStrategy mBob;
+
+    /** Restrict Alice to unique exchanges */
+    private final boolean mUniqueOnly;
+
+    /** Number of vertices of random graphs, or 0 */
+    private final int mNumVertex;
+
+    /** graph6/sparse6 lines of the graphs to play on, or null */
+    private final List<String> mGraphs;
+
+    /** Statistics of a number of games */
+    static class Stats
+    {
+        long games, finished, unfinished, invalid;
+
+        /** Sum of rounds over the minimum of finished games */
+        long extraRounds;
+
+        /** Histogram of move latencies in microseconds */
+        long[] latency = new long[LATENCY_BUCKETS];
+
+        long moves, maxLatency;
+
+        void addLatency(long ns) {
+            latency[(int) Math.min(ns / 1000, LATENCY_BUCKETS - 1)]++;
+            maxLatency = Math.max(maxLatency, ns);
+            ++moves;
+        }
+
+        void add(Stats s) {
+            games += s.games;
+            finished += s.finished;
+            unfinished += s.unfinished;
+            invalid += s.invalid;
+            extraRounds += s.extraRounds;
+            for (int i = 0; i < LATENCY_BUCKETS; ++i)
+                latency[i] += s.latency[i];
+            moves += s.moves;
+            maxLatency = Math.max(maxLatency, s.maxLatency);
+        }
+
+        /** Return the latency percentile p in microseconds */
+        long percentile(double p) {
+            if (moves == 0)
+                return 0;
+
+            long rank = (long) Math.ceil(p * moves), sum = 0;
+            for (int i = 0; i < LATENCY_BUCKETS; ++i) {
+                sum += latency[i];
+                if (sum >= rank)
+                    return i;
+            }
+            return LATENCY_BUCKETS - 1;
+        }
+    }
+
+    SelfPlay(AliceStrategy alice, BobStrategy bob, boolean uniqueOnly, int numVertex, List<String> graphs) {
+        if (graphs == null && (numVertex == 2 || numVertex == 3 || numVertex < 1))
+            throw new IllegalArgumentException("No simple bispanning graph with " + numVertex + " vertices exists.");
+        if (graphs != null && graphs.isEmpty())
+            throw new IllegalArgumentException("No graphs to play on.");
+        if (alice == AliceStrategy.SOLVER || bob == BobStrategy.SOLVER) {
+            if (graphs == null && 2 * numVertex - 2 > 64)
+                throw new IllegalArgumentException("The solver strategies support at most 64 edges.");
+
+            // check the file's graphs, numVertex is unused then
+            for (int i = 0; graphs != null && i < graphs.size(); ++i) {
+                if (Graph6.read_graph6(graphs.get(i)).getEdgeCount() > 64)
+                    throw new IllegalArgumentException("Graph " + (i + 1) + " has more than 64 edges,"
+                            + " the solver strategies support at most 64 edges.");
+            }
+        }
+
+        mAlice = alice;
+        mBob = bob;
+        mUniqueOnly = uniqueOnly;
+        mNumVertex = numVertex;
+        mGraphs = graphs;
+    }
+
+    /** Return the graph of game number i */
+    MyGraph getGraph(long i, SplittableRandom rng) {
+        if (mGraphs == null)
+            return BispanningGenerator.generate(mNumVertex, false, rng);
+        else
+            return Graph6.read_graph6(mGraphs.get((int) (i % mGraphs.size())));
+    }
+
+    /** Choose Alice's edge by the greedy strategy */
+    MyEdge greedyMove(GameEngine eng, GraphCSR csr, int[] buffer, SplittableRandom rng) {
+        csr.loadColors();
+        AlgUniqueExchanges alg = new AlgUniqueExchanges(csr, false);
+
+        MyEdge best = null;
+        int bestScore = Integer.MAX_VALUE, ties = 0;
+
+        for (int e = 0; e < csr.m; ++e) {
+            if (!eng.isLegalAliceMove(csr.edge[e]))
+                continue;
+
+            // count edges which would be flipped back, then answers
+            int cnt = alg.exchanges(e, buffer);
+            int bad = (csr.edge[e].color != csr.edge[e].origColor) ? 1 : 0;
+            for (int j = 0; j < cnt; ++j) {
+                MyEdge x = csr.edge[buffer[j]];
+                if (x.color != x.origColor)
+                    ++bad;
+            }
+            int score = bad * csr.m + cnt;
+
+            if (score < bestScore) {
+                best = csr.edge[e];
+                bestScore = score;
+                ties = 1;
+            }
+            else if (score == bestScore && rng.nextInt(++ties) == 0) {
+                best = csr.edge[e];
+            }
+        }
+
+        return best;
+    }
+
+    /** Choose Bob's candidate delaying Alice most according to the solver */
+    MyEdge solverBobMove(GameEngine eng, GameSolver solver, int maxRounds) {
+        MyEdge best = null;
+        int bestRounds = -1;
+
+        for (MyEdge f : eng.legalMoves()) {
+            f.flipColor();
+            int rounds = solver.solve(maxRounds);
+            f.flipColor();
+
+            // no win within maxRounds is best for Bob
+            if (rounds < 0)
+                return f;
+
+            if (rounds > bestRounds) {
+                best = f;
+                bestRounds = rounds;
+            }
+        }
+
+        return best;
+    }
+
+    /** Play game number i and add it to the statistics */
+    void play(long i, SplittableRandom rng, Stats stats) {
+        MyGraph g = getGraph(i, rng);
+
+        GameEngine eng = new GameEngine();
+        eng.newGame(g);
+        eng.setAllowFreeExchange(!mUniqueOnly);
+
+        stats.games++;
+
+        if (g.getEdgeCount() == 0 || g.message.length() != 0) {
+            stats.invalid++;
+            return;
+        }
+
+        GraphCSR csr = new GraphCSR(g);
+        int[] buffer = new int[csr.n];
+        int maxRounds = ROUND_LIMIT * csr.m;
+
+        GameSolver solver = null;
+        if (mAlice == AliceStrategy.SOLVER || mBob == BobStrategy.SOLVER)
+            solver = new GameSolver(g, mUniqueOnly);
+
+        while (!eng.isFinished()) {
+            if (eng.getRound() > maxRounds) {
+                stats.unfinished++;
+                return;
+            }
+
+            // choose Alice's move
+            MyEdge e = null;
+
+            if (mAlice == AliceStrategy.SOLVER)
+                e = solver.bestMove(maxRounds);
+            if (e == null && mAlice != AliceStrategy.RANDOM)
+                e = greedyMove(eng, csr, buffer, rng);
+            if (e == null) {
+                List<MyEdge> moves = eng.legalMoves();
+                if (moves.isEmpty()) {
+                    stats.unfinished++;
+                    return;
+                }
+                e = moves.get(rng.nextInt(moves.size()));
+            }
+
+            ExchangeAnalysis a = eng.beginAliceMove(e);
+            long t0 = System.nanoTime();
+            GameEngine.computeAliceMove(a, e);
+            stats.addLatency(System.nanoTime() - t0);
+            eng.finishAliceMove(a);
+
+            if (!eng.haveCycle())
+                continue;
+
+            // choose Bob's candidates
+            List<MyEdge> candidates;
+
+            if (mBob == BobStrategy.RANDOM) {
+                candidates = eng.legalMoves();
+                for (int j = candidates.size() - 1; j > 0; --j)
+                    Collections.swap(candidates, j, rng.nextInt(j + 1));
+            }
+            else if (mBob == BobStrategy.SOLVER) {
+                candidates = Collections.singletonList(solverBobMove(eng, solver, maxRounds));
+            }
+            else {
+                candidates = eng.bobCandidates();
+            }
+
+            a = eng.beginBobMove();
+            t0 = System.nanoTime();
+            MyEdge fix = GameEngine.computeBobMove(a, candidates);
+            stats.addLatency(System.nanoTime() - t0);
+
+            if (!eng.finishBobMove(a, fix))
+                throw new IllegalStateException("Bob could not fix the graph.");
+        }
+
+        stats.finished++;
+        stats.extraRounds += eng.getTurnNum() / 2 - eng.getMinRounds();
+    }
+
+    /** Task playing one chunk of games */
+    private class ChunkTask implements Callable<Stats>
+    {
+        private final SplittableRandom mRng;
+        private final long mBegin, mEnd;
+
+        ChunkTask(SplittableRandom rng, long begin, long end) {
+            mRng = rng;
+            mBegin = begin;
+            mEnd = end;
+        }
+
+        public Stats call() {
+            Stats stats = new Stats();
+            for (long i = mBegin; i < mEnd; ++i)
+                play(i, mRng, stats);
+            return stats;
+        }
+    }
+
+    /** Play count games from seed using numThreads threads */
+    Stats run(long seed, final long count, int numThreads) throws IOException, InterruptedException {
+        final SplittableRandom root = new SplittableRandom(seed);
+        final Stats total = new Stats();
+
+        new ChunkExecutor<Stats>() {
+            long mDone = 0;
+
+            Callable<Stats> next() {
+                if (mDone == count)
+                    return null;
+
+                long n = Math.min(CHUNK, count - mDone);
+                ChunkTask task = new ChunkTask(root.split(), mDone, mDone + n);
+                mDone += n;
+                return task;
+            }
+
+            void consume(Stats s) {
+                total.add(s);
+            }
+        }.run(numThreads);
+
+        return total;
+    }
+
+    static void usage() {
+        System.err.println("Usage: SelfPlay [-s seed] [-t threads] [-a random|greedy|solver] [-b random|default|solver]"
+                + " [-u] (-n vertices | -i file) count");
+        System.exit(1);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        long seed = System.nanoTime();
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        AliceStrategy alice = AliceStrategy.GREEDY;
+        BobStrategy bob = BobStrategy.DEFAULT;
+        boolean uniqueOnly = false;
+        int numVertex = 0;
+        List<String> graphs = null;
+
+        int i = 0;
+        try {
+            while (i < args.length && args[i].startsWith("-")) {
+                if (args[i].equals("-u")) {
+                    uniqueOnly = true;
+                    ++i;
+                    continue;
+                }
+
+                if (i + 1 >= args.length)
+                    usage();
+
+                String a = args[i + 1];
+                if (args[i].equals("-s"))
+                    seed = Long.parseLong(a);
+                else if (args[i].equals("-t"))
+                    numThreads = Integer.parseInt(a);
+                else if (args[i].equals("-a"))
+                    alice = AliceStrategy.valueOf(a.toUpperCase());
+                else if (args[i].equals("-b"))
+                    bob = BobStrategy.valueOf(a.toUpperCase());
+                else if (args[i].equals("-n"))
+                    numVertex = Integer.parseInt(a);
+                else if (args[i].equals("-i"))
+                    graphs = readLines(a);
+                else
+                    usage();
+                i += 2;
+            }
+
+            if (args.length - i != 1 || numThreads < 1 || (numVertex == 0) == (graphs == null))
+                usage();
+
+            long count = Long.parseLong(args[i]);
+
+            MyGraph.mVerbose = false;
+
+            SelfPlay sp = new SelfPlay(alice, bob, uniqueOnly, numVertex, graphs);
+
+            long t0 = System.nanoTime();
+            Stats s = sp.run(seed, count, numThreads);
+            double secs = (System.nanoTime() - t0) / 1e9;
+
+            System.out.println("alice=" + alice.name().toLowerCase() + " bob=" + bob.name().toLowerCase()
+                    + " unique_only=" + uniqueOnly + " threads=" + numThreads + " seed=" + seed);
+            System.out.println("games=" + s.games + " finished=" + s.finished + " unfinished=" + s.unfinished
+                    + " invalid=" + s.invalid + " time=" + String.format("%.3f", secs) + "s games/sec="
+                    + String.format("%.1f", s.games / secs));
+            System.out.println("mean_extra_rounds="
+                    + (s.finished == 0 ? "-" : String.format("%.4f", (double) s.extraRounds / s.finished)));
+            System.out.println("moves=" + s.moves + " latency_us p50=" + s.percentile(0.5) + " p90="
+                    + s.percentile(0.9) + " p99=" + s.percentile(0.99) + " p999=" + s.percentile(0.999) + " max="
+                    + (s.maxLatency / 1000));
+        }
+        catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            usage();
+        }
+    }
+
+    /** Read the non-empty lines of a file */
+    static List<String> readLines(String file) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader br = new BufferedReader(new FileReader(file));
+        try {
+            for (String line = br.readLine(); line != null; line = br.readLine()) {
+                if (line.trim().length() != 0)
+                    lines.add(line.trim());
+            }
+        }
+        finally {
+            br.close();
+        }
+        return lines;
+    }
+}
@@ -2,7 +2,7 @@
  * src/net/panthema/BispanningGame/UnionFind.java
  *
  * A disjoint sets ADT implemented with a Union-Find data structure.  Performs
- * union-by-rank and path compression.  Implemented using arrays.
+ * union-by-size and path compression.  Implemented using arrays.
  *
  * Elements are represented by ints, numbered from zero.
  *
@@ -12,6 +12,11 @@
  * where the root was last known to be.  If the set has been unioned with
  * another, the last known root will point to a more recent root.
  *
+ * In undoable mode, paths are not compressed, such that each union changes
+ * only the parent pointer of one root and its old value is pushed on a
+ * stack. Unions can then be undone in reverse order, which is used for
+ * backtracking searches over edge subsets.
+ *
  * Author: Mark Allen Weiss
  * Revised 7/21/00 by Matt Fleming
  *
@@ -36,6 +41,15 @@ public class UnionFind
 {
     private int[] array;
 
+    /** Number of disjoint sets */
+    private int count;
+
+    /** Stack of (root, old array value) pairs of unions, null if not undoable */
+    private int[] stack;
+
+    /** Size of the union stack */
+    private int stackSize;
+
     /**
      * Construct a disjoint sets object.
      * 
@@ -43,53 +57,119 @@ public class UnionFind
      * of disjoint sets, since every element is initially in its own set.
      */
     public UnionFind(int numElements) {
+        this(numElements, false);
+    }
+
+    /**
+     * Construct a disjoint sets object, whose unions can be undone by
+     * rollback() if undoable is true. Then find() takes O(log n) time.
+     */
+    public UnionFind(int numElements, boolean undoable) {
         array = new int[numElements];
         for (int i = 0; i < array.length; i++) {
             array[i] = -1;
         }
+        count = numElements;
+
+        if (undoable)
+            stack = new int[2 * numElements];
+    }
+
+    /**
+     * Construct a disjoint sets object from the root of each element, e.g.
+     * as collected from a ConcurrentUnionFind.
+     */
+    UnionFind(int[] root) {
+        array = new int[root.length];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = (root[i] == i) ? 0 : root[i];
+            if (root[i] == i)
+                count++;
+        }
+        for (int i = 0; i < array.length; i++) {
+            array[root[i]]--;
+        }
     }
 
     /**
      * find() finds the (int) name of the set containing a given element.
-     * Performs path compression along the way.
+     * Performs path compression along the way, unless undoable.
      * 
      * x is the element sought. returns the set containing x.
      */
     public int find(int x) {
-        if (array[x] < 0) {
-            return x; // x is the root of the tree; return it
-        }
-        else {
-            // Find out who the root is; compress path by making the root x's
-            // parent.
-            array[x] = find(array[x]);
-            return array[x]; // Return the root
+        int root = x;
+        while (array[root] >= 0)
+            root = array[root];
+
+        if (stack == null) {
+            // compress path by making the root x's parent, and so on.
+            while (array[x] >= 0 && array[x] != root) {
+                int next = array[x];
+                array[x] = root;
+                x = next;
+            }
         }
+
+        return root;
     }
 
     /**
-     * union() unites two disjoint sets into a single set. A union-by-rank
+     * union() unites two disjoint sets into a single set. A union-by-size
      * heuristic is used to choose the new root.
      * 
      * a is an element in the first set. b is an element in the first set.
+     * returns false if both were already in the same set.
      */
-    public void union(int a, int b) {
+    public boolean union(int a, int b) {
         int root_a = find(a);
         int root_b = find(b);
 
         if (root_a == root_b)
-            return;
+            return false;
 
         if (array[root_b] < array[root_a]) {
             // root_b has more elements, so leave it as the root.
-            // first, indicate that the set represented by root_b has grown.
-            array[root_b] += array[root_a];
-            // Then, point the root of set a at set b.
-            array[root_a] = root_b;
+            int t = root_a;
+            root_a = root_b;
+            root_b = t;
         }
-        else {
-            array[root_a] += array[root_b];
-            array[root_b] = root_a;
+
+        if (stack != null) {
+            stack[stackSize++] = root_b;
+            stack[stackSize++] = array[root_b];
+        }
+
+        // indicate that the set represented by root_a has grown, then point
+        // the root of set b at set a.
+        array[root_a] += array[root_b];
+        array[root_b] = root_a;
+        --count;
+        return true;
+    }
+
+    /** Return the number of disjoint sets */
+    public int count() {
+        return count;
+    }
+
+    /** Return a mark to which later unions can be rolled back */
+    public int snapshot() {
+        assert (stack != null);
+        return stackSize;
+    }
+
+    /** Undo all unions made after snapshot() returned mark */
+    public void rollback(int mark) {
+        assert (stack != null);
+
+        while (stackSize > mark) {
+            int old = stack[--stackSize];
+            int root_b = stack[--stackSize];
+
+            array[array[root_b]] -= old;
+            array[root_b] = old;
+            ++count;
         }
     }
 }